@@ -0,0 +1,123 @@
+package jp.wasabeef.glide.transformations;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.MultiTransformation;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.resource.bitmap.BitmapResource;
+import com.bumptech.glide.load.resource.bitmap.CenterCrop;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import jp.wasabeef.glide.transformations.test.R;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A fused run draws what the steps draw one after the other, up to resampling and rounding.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChainTransformationTest {
+
+  private static final int OUT_WIDTH = 48;
+  private static final int OUT_HEIGHT = 36;
+
+  /**
+   * Largest difference of a channel, premultiplied, allowed at any pixel. The unfused chain
+   * resamples once per step, so edges and the circle's antialiasing can move by a fraction of a
+   * pixel.
+   */
+  private static final int MAX_DIFFERENCE = 48;
+  /**
+   * Largest mean difference of a channel over the whole output.
+   */
+  private static final float MAX_MEAN_DIFFERENCE = 2f;
+
+  private Context context;
+  private Bitmap source;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    // Smooth gradients, so a resampling difference stays a small color difference.
+    int width = 90;
+    int height = 120;
+    int[] pixels = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        pixels[y * width + x] = Color.rgb(x * 255 / width, y * 255 / height,
+            (x + y) * 255 / (width + height));
+      }
+    }
+    source = Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+  }
+
+  @Test
+  public void centerCropGrayscaleBorderedCircle() {
+    assertFusedMatchesUnfused(Arrays.<Transformation<Bitmap>>asList(new CenterCrop(),
+        new GrayscaleTransformation(), new BorderCircleCrop(3, Color.RED, 2, Color.BLUE)));
+  }
+
+  @Test
+  public void cropThenMaskCroppedToTarget() {
+    assertFusedMatchesUnfused(Arrays.<Transformation<Bitmap>>asList(
+        new CropTransformation(60, 40), new MaskTransformation(R.drawable.mask_oval, true)));
+  }
+
+  private void assertFusedMatchesUnfused(List<Transformation<Bitmap>> steps) {
+    ChainTransformation chain = new ChainTransformation(steps);
+    assertEquals("fused into one draw", 1, chain.getSegments().size());
+
+    Bitmap fused = transform(chain);
+    Bitmap unfused = transform(new MultiTransformation<>(steps));
+    assertEquals(unfused.getWidth(), fused.getWidth());
+    assertEquals(unfused.getHeight(), fused.getHeight());
+
+    int width = fused.getWidth();
+    int height = fused.getHeight();
+    int[] expected = new int[width * height];
+    int[] actual = new int[width * height];
+    unfused.getPixels(expected, 0, width, 0, 0, width, height);
+    fused.getPixels(actual, 0, width, 0, 0, width, height);
+
+    long total = 0;
+    for (int i = 0; i < expected.length; i++) {
+      for (int shift = 0; shift < 32; shift += 8) {
+        int difference = Math.abs(premultiplied(expected[i], shift)
+            - premultiplied(actual[i], shift));
+        assertTrue(steps + " at " + i % width + "," + i / width + ": " + difference,
+            difference <= MAX_DIFFERENCE);
+        total += difference;
+      }
+    }
+    float mean = total / (4f * expected.length);
+    assertTrue(steps + " mean " + mean, mean <= MAX_MEAN_DIFFERENCE);
+  }
+
+  /**
+   * A channel weighted by alpha, so pixels both results leave transparent compare equal whatever
+   * their color.
+   */
+  private static int premultiplied(int color, int shift) {
+    int alpha = color >>> 24;
+    int channel = (color >>> shift) & 0xff;
+    return shift == 24 ? alpha : (channel * alpha + 127) / 255;
+  }
+
+  private Bitmap transform(Transformation<Bitmap> transformation) {
+    Resource<Bitmap> resource = BitmapResource.obtain(source, Glide.get(context).getBitmapPool());
+    return transformation.transform(context, resource, OUT_WIDTH, OUT_HEIGHT).get();
+  }
+}
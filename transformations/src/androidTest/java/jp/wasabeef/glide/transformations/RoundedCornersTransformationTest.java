@@ -0,0 +1,127 @@
+package jp.wasabeef.glide.transformations;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPoolAdapter;
+import com.bumptech.glide.load.resource.bitmap.BitmapResource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import jp.wasabeef.glide.transformations.RoundedCornersTransformation.CornerType;
+import jp.wasabeef.glide.transformations.RoundedCornersTransformation.Mode;
+import jp.wasabeef.glide.transformations.internal.Utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RoundedCornersTransformationTest {
+
+  private Context context;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+  }
+
+  @Test
+  public void cornersRoundsACopyOfTheCallersBitmap() {
+    RoundedCornersTransformation corners =
+        new RoundedCornersTransformation(10, 0, CornerType.ALL, Mode.CORNERS);
+    Bitmap bitmap = opaqueBitmap();
+    // Glide wraps a BitmapDrawable's bitmap like this too, so the resource proves nothing.
+    Resource<Bitmap> resource = BitmapResource.obtain(bitmap, Glide.get(context).getBitmapPool());
+
+    for (int i = 0; i < 2; i++) {
+      Resource<Bitmap> result = corners.transform(context, resource, 40, 30);
+
+      assertNotSame(bitmap, result.get());
+      assertEquals(0, Color.alpha(result.get().getPixel(0, 0)));
+      assertEquals(0xff, Color.alpha(result.get().getPixel(20, 15)));
+      assertEquals(0xff, Color.alpha(bitmap.getPixel(0, 0)));
+    }
+  }
+
+  @Test
+  public void drawsTheSamePixelsAsABitmapShader() {
+    Bitmap source = patternBitmap(50, 70);
+    for (Mode mode : new Mode[] { Mode.DRAW, Mode.CROP_TO_TARGET }) {
+      RoundedCornersTransformation rounded =
+          new RoundedCornersTransformation(12, 3, CornerType.ALL, mode);
+      Bitmap actual = rounded.transform(context, new BitmapPoolAdapter(), source, 40, 40);
+      Bitmap expected = shaderFill(source, 12, 3, mode == Mode.CROP_TO_TARGET, 40, 40);
+
+      assertEquals(expected.getWidth(), actual.getWidth());
+      assertEquals(expected.getHeight(), actual.getHeight());
+      for (int y = 0; y < expected.getHeight(); y++) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+          int e = expected.getPixel(x, y);
+          int a = actual.getPixel(x, y);
+          // Coverage times color rounds once either way, allow for it landing one apart.
+          for (int shift = 0; shift < 32; shift += 8) {
+            int difference = Math.abs(((e >>> shift) & 0xff) - ((a >>> shift) & 0xff));
+            assertTrue(mode + " (" + x + ", " + y + "): " + Integer.toHexString(e) + " vs "
+                + Integer.toHexString(a), difference <= 1);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * How rounded corners were drawn before: the round rect filled with a shader of the image.
+   */
+  private static Bitmap shaderFill(Bitmap source, int radius, int margin, boolean cropToTarget,
+                                   int outWidth, int outHeight) {
+    int width = cropToTarget ? outWidth : source.getWidth();
+    int height = cropToTarget ? outHeight : source.getHeight();
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+
+    BitmapShader shader = new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+    if (cropToTarget) {
+      Matrix matrix = new Matrix();
+      Utils.centerCrop(matrix, source.getWidth(), source.getHeight(), width, height);
+      shader.setLocalMatrix(matrix);
+    }
+    Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    paint.setAntiAlias(true);
+    paint.setShader(shader);
+    new Canvas(bitmap).drawRoundRect(
+        new RectF(margin, margin, width - margin, height - margin), radius, radius, paint);
+    return bitmap;
+  }
+
+  /**
+   * Diagonal stripes, so resampling shows.
+   */
+  private static Bitmap patternBitmap(int width, int height) {
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        bitmap.setPixel(x, y, (x + y) % 6 < 3 ? Color.RED : Color.rgb(20, 200, x * 5));
+      }
+    }
+    return bitmap;
+  }
+
+  private static Bitmap opaqueBitmap() {
+    Bitmap bitmap = Bitmap.createBitmap(40, 30, Bitmap.Config.ARGB_8888);
+    bitmap.eraseColor(Color.RED);
+    return bitmap;
+  }
+}
@@ -0,0 +1,239 @@
+package jp.wasabeef.glide.transformations;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.PointF;
+import android.os.Debug;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import jp.wasabeef.glide.transformations.RoundedCornersTransformation.CornerType;
+import jp.wasabeef.glide.transformations.RoundedCornersTransformation.Mode;
+import jp.wasabeef.glide.transformations.cpu.KuwaharaFilterTransformation;
+import jp.wasabeef.glide.transformations.cpu.PixelationFilterTransformation;
+import jp.wasabeef.glide.transformations.cpu.SepiaFilterTransformation;
+import jp.wasabeef.glide.transformations.cpu.SketchFilterTransformation;
+import jp.wasabeef.glide.transformations.cpu.SwirlFilterTransformation;
+import jp.wasabeef.glide.transformations.cpu.ToonFilterTransformation;
+import jp.wasabeef.glide.transformations.cpu.VignetteFilterTransformation;
+import jp.wasabeef.glide.transformations.test.R;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Once warm, transformations allocate nothing but their output bitmap, on the calling thread.
+ * Splitting a kernel across cores allocates its bands, and RenderScript and the gpu filters
+ * allocate their contexts, by design, so those are not checked here.
+ */
+@RunWith(AndroidJUnit4.class)
+@SuppressWarnings("deprecation")
+public class SteadyStateAllocationTest {
+
+  private static final int OUT = 40;
+
+  private Context context;
+  private ReusingBitmapPool pool;
+  private Bitmap source;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    pool = new ReusingBitmapPool();
+    // LruArrayPool boxes the sizes it tracks, which would count against every kernel here.
+    Glide.init(context, new GlideBuilder().setArrayPool(new ReusingArrayPool()));
+    source = Bitmap.createBitmap(60, 80, Bitmap.Config.ARGB_8888);
+    source.eraseColor(Color.BLUE);
+  }
+
+  @After
+  public void tearDown() {
+    Glide.tearDown();
+  }
+
+  @Test
+  public void warmTransformationsAllocateNothing() {
+    List<Transformation<Bitmap>> transformations = new ArrayList<>();
+    transformations.add(new GrayscaleTransformation());
+    transformations.add(new ColorFilterTransformation(0x80ff0000));
+    transformations.add(new FusedColorTransformation(new GrayscaleTransformation(),
+        new ColorFilterTransformation(0x80ff0000)));
+    transformations.add(new CropSquareTransformation());
+    transformations.add(new CropTransformation(OUT, OUT));
+    transformations.add(new RoundedCornersTransformation(8, 2));
+    transformations.add(new RoundedCornersTransformation(8, 2,
+        CornerType.DIAGONAL_FROM_TOP_LEFT));
+    transformations.add(new RoundedCornersTransformation(8, 0, CornerType.ALL,
+        Mode.CROP_TO_TARGET));
+    transformations.add(new RoundedCornersTransformation(8, 2, CornerType.ALL, Mode.CORNERS));
+    transformations.add(new BorderCircleCrop());
+    transformations.add(new BorderCircleCrop(3, Color.WHITE, 2, Color.BLACK));
+    transformations.add(new BorderRoundedCorners(8, 3, Color.WHITE));
+    transformations.add(new MaskTransformation(R.drawable.mask_oval));
+    transformations.add(new BorderMask(R.drawable.mask_oval, true));
+    transformations.add(new BorderMask(R.drawable.mask_oval, 3, Color.WHITE, 2, Color.BLACK));
+    transformations.add(new BlurTransformation(10));
+    transformations.add(new BlurTransformation(10, 2, BlurTransformation.Engine.BOX));
+    transformations.add(new KuwaharaFilterTransformation(4));
+    transformations.add(new PixelationFilterTransformation(6f));
+    transformations.add(new SepiaFilterTransformation());
+    transformations.add(new SketchFilterTransformation());
+    transformations.add(new SwirlFilterTransformation(0.5f, 1f, new PointF(0.5f, 0.5f)));
+    transformations.add(new ToonFilterTransformation());
+    transformations.add(new VignetteFilterTransformation());
+
+    // A chain of geometry, color and shape is a single draw.
+    List<Transformation<Bitmap>> segments = new ChainTransformation(
+        new CropSquareTransformation(), new GrayscaleTransformation(),
+        new BorderCircleCrop(2, Color.WHITE)).getSegments();
+    assertEquals(1, segments.size());
+    transformations.add(segments.get(0));
+
+    for (Transformation<Bitmap> transformation : transformations) {
+      // Fills the per-thread drawing objects, the caches and the pool.
+      transform(transformation);
+      transform(transformation);
+
+      Debug.resetThreadAllocCount();
+      Debug.startAllocCounting();
+      transform(transformation);
+      Debug.stopAllocCounting();
+      int allocations = Debug.getThreadAllocCount();
+
+      assertEquals(transformation.toString(), 0, allocations);
+    }
+  }
+
+  private void transform(Transformation<Bitmap> transformation) {
+    // Below Glide's resource bookkeeping, which allocates a BitmapResource per call.
+    Bitmap result;
+    if (transformation instanceof BaseTransformation) {
+      result = ((BaseTransformation) transformation).transform(context, pool, source, OUT, OUT);
+    } else {
+      result = ((BitmapTransformation) transformation).transform(context, pool, source, OUT, OUT);
+    }
+    if (result != source) {
+      pool.put(result);
+    }
+  }
+
+  /**
+   * Hands back the bitmaps put into it without allocating, the way a warm
+   * {@link com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool} hands back its own.
+   */
+  private static final class ReusingBitmapPool implements BitmapPool {
+
+    private final List<Bitmap> bitmaps = new ArrayList<>();
+
+    @Override
+    public long getMaxSize() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public void setSizeMultiplier(float sizeMultiplier) {
+    }
+
+    @Override
+    public void put(Bitmap bitmap) {
+      bitmaps.add(bitmap);
+    }
+
+    @NonNull
+    @Override
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+      Bitmap bitmap = getDirty(width, height, config);
+      bitmap.eraseColor(Color.TRANSPARENT);
+      return bitmap;
+    }
+
+    @NonNull
+    @Override
+    public Bitmap getDirty(int width, int height, Bitmap.Config config) {
+      // Indexed, an iterator would be an allocation.
+      for (int i = 0; i < bitmaps.size(); i++) {
+        Bitmap bitmap = bitmaps.get(i);
+        if (bitmap.getWidth() == width && bitmap.getHeight() == height
+            && bitmap.getConfig() == config) {
+          return bitmaps.remove(i);
+        }
+      }
+      return Bitmap.createBitmap(width, height, config);
+    }
+
+    @Override
+    public void clearMemory() {
+      bitmaps.clear();
+    }
+
+    @Override
+    public void trimMemory(int level) {
+    }
+  }
+
+  /**
+   * The array counterpart of {@link ReusingBitmapPool}.
+   */
+  private static final class ReusingArrayPool implements ArrayPool {
+
+    private final List<Object> arrays = new ArrayList<>();
+
+    @Override
+    @Deprecated
+    public synchronized <T> void put(T array, Class<T> arrayClass) {
+      put(array);
+    }
+
+    @Override
+    public synchronized <T> void put(T array) {
+      arrays.add(array);
+    }
+
+    @Override
+    public synchronized <T> T get(int size, Class<T> arrayClass) {
+      for (int i = 0; i < arrays.size(); i++) {
+        Object array = arrays.get(i);
+        if (array.getClass() == arrayClass && Array.getLength(array) >= size) {
+          return arrayClass.cast(arrays.remove(i));
+        }
+      }
+      return arrayClass.cast(Array.newInstance(arrayClass.getComponentType(), size));
+    }
+
+    @Override
+    public synchronized <T> T getExact(int size, Class<T> arrayClass) {
+      for (int i = 0; i < arrays.size(); i++) {
+        Object array = arrays.get(i);
+        if (array.getClass() == arrayClass && Array.getLength(array) == size) {
+          return arrayClass.cast(arrays.remove(i));
+        }
+      }
+      return arrayClass.cast(Array.newInstance(arrayClass.getComponentType(), size));
+    }
+
+    @Override
+    public synchronized void clearMemory() {
+      arrays.clear();
+    }
+
+    @Override
+    public void trimMemory(int level) {
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package jp.wasabeef.glide.transformations.gpu;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapResource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import jp.co.cyberagent.android.gpuimage.filter.GPUImageFilter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class GPUFilterTransformationTest {
+
+  private Context context;
+  private BitmapPool pool;
+
+  @Before
+  public void setUp() {
+    context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    pool = Glide.get(context).getBitmapPool();
+  }
+
+  @After
+  public void tearDown() {
+    GPUFilterTransformation.setRenderer(null);
+  }
+
+  @Test
+  public void rendersThroughTheInstalledRenderer() {
+    FakeRenderer fake = new FakeRenderer();
+    GPUFilterTransformation.setRenderer(fake);
+
+    GPUFilterTransformation[] transformations = {
+        new BrightnessFilterTransformation(0.5f),
+        new ContrastFilterTransformation(2.0f),
+        new InvertFilterTransformation(),
+        new KuwaharaFilterTransformation(5),
+        new PixelationFilterTransformation(4f),
+        new SepiaFilterTransformation(0.5f),
+        new SketchFilterTransformation(),
+        new SwirlFilterTransformation(),
+        new ToonFilterTransformation(),
+        new VignetteFilterTransformation()
+    };
+    for (GPUFilterTransformation transformation : transformations) {
+      Bitmap source = Bitmap.createBitmap(8, 6, Bitmap.Config.ARGB_8888);
+      Resource<Bitmap> result =
+          transformation.transform(context, BitmapResource.obtain(source, pool), 8, 6);
+
+      assertSame(transformation.toString(), transformation.getFilter(), fake.filter);
+      assertSame(transformation.toString(), source, fake.bitmap);
+      assertSame(transformation.toString(), fake.result, result.get());
+    }
+  }
+
+  @Test
+  public void sharedRendererReadsBackUprightArgb() {
+    Random random = new Random(1);
+    int width = 7;
+    int height = 5;
+    int[] colors = new int[width * height];
+    for (int i = 0; i < colors.length; i++) {
+      // Every other pixel half transparent: the readback must not premultiply it again.
+      colors[i] = (i % 2 == 0 ? 0xff000000 : 0x80000000) | random.nextInt(0x1000000);
+    }
+    Bitmap source = Bitmap.createBitmap(colors, width, height, Bitmap.Config.ARGB_8888);
+
+    // The plain filter passes every texel through unchanged.
+    Bitmap result = SharedFilterRenderer.get(context).render(new GPUImageFilter(), source, pool);
+
+    assertEquals(width, result.getWidth());
+    assertEquals(height, result.getHeight());
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int expected = colors[y * width + x];
+        int actual = result.getPixel(x, y);
+        // Half alpha keeps one bit less of each color through the premultiplied texture.
+        int tolerance = (expected >>> 24) == 0xff ? 1 : 2;
+        for (int shift = 0; shift < 32; shift += 8) {
+          int difference = Math.abs(((expected >>> shift) & 0xff) - ((actual >>> shift) & 0xff));
+          assertTrue("(" + x + ", " + y + ") " + Integer.toHexString(expected) + " != "
+              + Integer.toHexString(actual), difference <= tolerance);
+        }
+      }
+    }
+  }
+
+  private static final class FakeRenderer implements FilterRenderer {
+
+    GPUImageFilter filter;
+    Bitmap bitmap;
+    Bitmap result;
+
+    @NonNull
+    @Override
+    public Bitmap render(@NonNull GPUImageFilter filter, @NonNull Bitmap bitmap,
+                         @NonNull BitmapPool pool) {
+      this.filter = filter;
+      this.bitmap = bitmap;
+      result = pool.get(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
+      return result;
+    }
+  }
+}
@@ -1,8 +1,12 @@
 package jp.wasabeef.glide.transformations;
 
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
 import android.os.Build;
 
 import androidx.annotation.NonNull;
@@ -16,6 +20,9 @@ import com.bumptech.glide.request.target.Target;
 import com.bumptech.glide.util.Util;
 
 import java.security.MessageDigest;
+import java.util.ArrayList;
+
+import jp.wasabeef.glide.transformations.internal.Drawing;
 
 /**
  * 创建者：pyt
@@ -24,6 +31,30 @@ import java.security.MessageDigest;
  */
 public abstract class BaseTransformation implements Transformation<Bitmap> {
 
+    /**
+     * 画形状的画笔，形状画好后用 {@link #IMAGE_IN_PAINT} 把图片画进去
+     */
+    static final Paint SHAPE_PAINT = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /**
+     * 只在已画出的形状内画图片，结果与用图片的 BitmapShader 填充形状相同，但不用每张图片新建 shader
+     */
+    static final Paint IMAGE_IN_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    static {
+        IMAGE_IN_PAINT.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
+    }
+
+    /**
+     * 当前线程上正在进行的转换借出的临时位图，嵌套的转换各自从记下的位置开始归还
+     */
+    private static final ThreadLocal<Scratch> sScratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private String ID_STRING;
     private byte[] ID_BYTES;
 
     @NonNull
@@ -37,7 +68,13 @@ public abstract class BaseTransformation implements Transformation<Bitmap> {
         Bitmap toTransform = resource.get();
         int targetWidth = outWidth == Target.SIZE_ORIGINAL ? toTransform.getWidth() : outWidth;
         int targetHeight = outHeight == Target.SIZE_ORIGINAL ? toTransform.getHeight() : outHeight;
-        Bitmap transformed = transform(context, bitmapPool, toTransform, targetWidth, targetHeight);
+        int mark = beginScratch();
+        Bitmap transformed = null;
+        try {
+            transformed = transform(context, bitmapPool, toTransform, targetWidth, targetHeight);
+        } finally {
+            endScratch(mark, bitmapPool, transformed, isDebuggable(context));
+        }
 
         final Resource<Bitmap> result;
         if (toTransform.equals(transformed)) {
@@ -49,7 +86,63 @@ public abstract class BaseTransformation implements Transformation<Bitmap> {
     }
 
     /**
-     * 获取Alpha安全位图
+     * 从位图池借一张临时位图，当前的 {@link #transform} 返回时（包括抛出异常时）自动放回位图池，
+     * 调用方不能再 put 或把它作为结果返回
+     *
+     * @throws IllegalStateException 不在 {@link #transform} 或 {@link #beginScratch()} 的范围内调用
+     */
+    @NonNull
+    protected final Bitmap obtainScratch(@NonNull BitmapPool pool, int width, int height, @NonNull Bitmap.Config config) {
+        Scratch scratch = sScratch.get();
+        if (scratch.depth == 0) {
+            throw new IllegalStateException("Scratch bitmaps can only be obtained while a transformation runs");
+        }
+        Bitmap bitmap = pool.get(width, height, config);
+        scratch.leased.add(bitmap);
+        return bitmap;
+    }
+
+    /**
+     * 开始一个临时位图的范围，{@link #transform} 之外借用临时位图时使用，返回值交给 {@link #endScratch}
+     */
+    protected static int beginScratch() {
+        Scratch scratch = sScratch.get();
+        scratch.depth++;
+        return scratch.leased.size();
+    }
+
+    /**
+     * 结束范围，把范围内借出的临时位图放回位图池
+     *
+     * @param result 转换的结果，临时位图不能作为结果，strict 时抛出异常，否则只是不放回位图池
+     * @param strict 是否检查临时位图作为结果逃逸
+     */
+    protected static void endScratch(int mark, @NonNull BitmapPool pool, Bitmap result, boolean strict) {
+        Scratch scratch = sScratch.get();
+        scratch.depth--;
+        boolean escaped = false;
+        for (int i = scratch.leased.size() - 1; i >= mark; i--) {
+            Bitmap bitmap = scratch.leased.remove(i);
+            if (bitmap == result) {
+                escaped = true;
+            } else {
+                pool.put(bitmap);
+            }
+        }
+        if (escaped && strict) {
+            throw new IllegalStateException("A scratch bitmap was returned as the result of a transformation");
+        }
+    }
+
+    /**
+     * 可调试的应用里检查临时位图是否逃逸
+     */
+    private static boolean isDebuggable(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    /**
+     * 获取Alpha安全位图，需要转换时返回的是临时位图
      */
     Bitmap getAlphaSafeBitmap(@NonNull BitmapPool pool, @NonNull Bitmap maybeAlphaSafe) {
         Bitmap.Config safeConfig = getAlphaSafeConfig(maybeAlphaSafe);
@@ -57,8 +150,10 @@ public abstract class BaseTransformation implements Transformation<Bitmap> {
             return maybeAlphaSafe;
         }
 
-        Bitmap argbBitmap = pool.get(maybeAlphaSafe.getWidth(), maybeAlphaSafe.getHeight(), safeConfig);
-        new Canvas(argbBitmap).drawBitmap(maybeAlphaSafe, 0, 0, null);
+        Bitmap argbBitmap = obtainScratch(pool, maybeAlphaSafe.getWidth(), maybeAlphaSafe.getHeight(), safeConfig);
+        Canvas canvas = Drawing.obtainCanvas(argbBitmap);
+        canvas.drawBitmap(maybeAlphaSafe, 0, 0, null);
+        clear(canvas);
         return argbBitmap;
     }
 
@@ -78,15 +173,24 @@ public abstract class BaseTransformation implements Transformation<Bitmap> {
         canvas.setBitmap(null);
     }
 
+    /**
+     * 转换id，构造后参数不再改变，只拼接一次
+     */
+    String getCachedID() {
+        if (ID_STRING == null)
+            ID_STRING = getID();
+        return ID_STRING;
+    }
+
     @Override
     public int hashCode() {
-        return getID().hashCode();
+        return getCachedID().hashCode();
     }
 
     @Override
     public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
         if (ID_BYTES == null)
-            ID_BYTES = getID().getBytes(CHARSET);
+            ID_BYTES = getCachedID().getBytes(CHARSET);
         messageDigest.update(ID_BYTES);
     }
 
@@ -105,4 +209,9 @@ public abstract class BaseTransformation implements Transformation<Bitmap> {
      */
     protected abstract String getID();
 
+    private static final class Scratch {
+        final ArrayList<Bitmap> leased = new ArrayList<>();
+        int depth;
+    }
+
 }
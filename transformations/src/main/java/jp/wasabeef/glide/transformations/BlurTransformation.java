@@ -19,17 +19,39 @@ package jp.wasabeef.glide.transformations;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 
 import java.security.MessageDigest;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import jp.wasabeef.glide.transformations.internal.BoxBlur;
+import jp.wasabeef.glide.transformations.internal.Drawing;
 import jp.wasabeef.glide.transformations.internal.FastBlur;
+import jp.wasabeef.glide.transformations.internal.ParallelBands;
 
 public class BlurTransformation extends BitmapTransformation {
 
+  public enum Engine {
+    /**
+     * StackBlur, see {@link FastBlur}.
+     */
+    STACK,
+    /**
+     * Three box blurs approximating a Gaussian, see {@link BoxBlur}. Faster, but not
+     * pixel-identical to {@link #STACK}.
+     */
+    BOX
+  }
+
+  private static final Paint FILTER_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
   private static final int VERSION = 1;
   private static final String ID =
       "jp.wasabeef.glide.transformations.BlurTransformation." + VERSION;
@@ -39,6 +61,8 @@ public class BlurTransformation extends BitmapTransformation {
 
   private int radius;
   private int sampling;
+  private boolean parallel;
+  private Engine engine;
 
   public BlurTransformation() {
     this(MAX_RADIUS, DEFAULT_DOWN_SAMPLING);
@@ -49,8 +73,26 @@ public class BlurTransformation extends BitmapTransformation {
   }
 
   public BlurTransformation(int radius, int sampling) {
+    this(radius, sampling, false);
+  }
+
+  /**
+   * @param parallel blur large bitmaps on all cores, see {@link FastBlur#PARALLEL_THRESHOLD}.
+   *                 The output is the same either way.
+   */
+  public BlurTransformation(int radius, int sampling, boolean parallel) {
+    this(radius, sampling, parallel, Engine.STACK);
+  }
+
+  public BlurTransformation(int radius, int sampling, Engine engine) {
+    this(radius, sampling, false, engine);
+  }
+
+  public BlurTransformation(int radius, int sampling, boolean parallel, Engine engine) {
     this.radius = radius;
     this.sampling = sampling;
+    this.parallel = parallel;
+    this.engine = engine;
   }
 
   @Override
@@ -64,36 +106,54 @@ public class BlurTransformation extends BitmapTransformation {
 
     Bitmap bitmap = pool.get(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
 
-    Canvas canvas = new Canvas(bitmap);
-    canvas.scale(1 / (float) sampling, 1 / (float) sampling);
-    Paint paint = new Paint();
-    paint.setFlags(Paint.FILTER_BITMAP_FLAG);
-    canvas.drawBitmap(toTransform, 0, 0, paint);
-
-    bitmap = FastBlur.blur(bitmap, radius, true);
+    Matrix matrix = Drawing.matrix();
+    matrix.setScale(1 / (float) sampling, 1 / (float) sampling);
+    Canvas canvas = Drawing.obtainCanvas(bitmap);
+    canvas.drawBitmap(toTransform, matrix, FILTER_PAINT);
+    Drawing.releaseCanvas(canvas);
+
+    ArrayPool arrayPool = Glide.get(context).getArrayPool();
+    switch (engine) {
+      case BOX:
+        bitmap = BoxBlur.blur(bitmap, radius, arrayPool, getExecutor());
+        break;
+      case STACK:
+      default:
+        bitmap = FastBlur.blur(bitmap, radius, true, arrayPool, getExecutor());
+        break;
+    }
 
     return bitmap;
   }
 
+  @Nullable
+  private Executor getExecutor() {
+    return parallel ? ParallelBands.defaultExecutor() : null;
+  }
+
   @Override
   public String toString() {
-    return "BlurTransformation(radius=" + radius + ", sampling=" + sampling + ")";
+    return "BlurTransformation(radius=" + radius + ", sampling=" + sampling
+        + ", engine=" + engine + ")";
   }
 
   @Override
   public boolean equals(Object o) {
     return o instanceof BlurTransformation &&
         ((BlurTransformation) o).radius == radius &&
-        ((BlurTransformation) o).sampling == sampling;
+        ((BlurTransformation) o).sampling == sampling &&
+        ((BlurTransformation) o).engine == engine;
   }
 
   @Override
   public int hashCode() {
-    return ID.hashCode() + radius * 1000 + sampling * 10;
+    return ID.hashCode() + radius * 1000 + sampling * 10 + engine.ordinal();
   }
 
   @Override
   public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
-    messageDigest.update((ID + radius + sampling).getBytes(CHARSET));
+    // STACK keeps the key it had before engines existed, so existing cache entries stay valid.
+    String key = engine == Engine.STACK ? ID + radius + sampling : ID + radius + sampling + engine;
+    messageDigest.update(key.getBytes(CHARSET));
   }
 }
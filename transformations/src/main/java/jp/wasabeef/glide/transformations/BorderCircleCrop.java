@@ -6,12 +6,14 @@ import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
-import android.graphics.RectF;
 
 import androidx.annotation.NonNull;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 
+import jp.wasabeef.glide.transformations.internal.Drawing;
+import jp.wasabeef.glide.transformations.internal.OverlayCache;
+
 /**
  * 创建者：pyt
  * 创建时间：2019-08-07 15:20
@@ -79,36 +81,58 @@ public class BorderCircleCrop extends BaseBorderTransformation {
         float left = (destMinEdge - scaledWidth) / 2f + mAllBorder;
         float top = (destMinEdge - scaledHeight) / 2f + mAllBorder;
 
-        RectF destRect = new RectF(left, top, left + scaledWidth, top + scaledHeight);
-
-        // 此转换需要Alpha
+        // 此转换需要Alpha，转换出的临时位图在返回后自动放回位图池
         Bitmap bitmap = getAlphaSafeBitmap(pool, toTransform);
+        //同样尺寸的边框环只描边一次，之后直接绘制缓存的位图；缓存放不下的尺寸直接在结果上描边
+        boolean bordered = mBorder1Breadth > 0;
+        Bitmap ring = bordered && OverlayCache.canHold(min, min) ? getRing(context, min) : null;
 
         Bitmap result = pool.get(min, min, getAlphaSafeConfig(toTransform));
         result.setHasAlpha(true);
 
-        Canvas canvas = new Canvas(result);
+        Canvas canvas = Drawing.obtainCanvas(result);
         // 画图片的圆
         canvas.drawCircle(radius, radius, radius - mAllBorder, CIRCLE_CROP_SHAPE_PAINT);
         // 在圆里画图片
-        canvas.drawBitmap(bitmap, null, destRect, CIRCLE_CROP_BITMAP_PAINT);
+        canvas.drawBitmap(bitmap, null, Drawing.rect(left, top, left + scaledWidth, top + scaledHeight),
+                CIRCLE_CROP_BITMAP_PAINT);
 
         //画边框
-        if (mBorder1Breadth > 0) {
-            canvas.drawCircle(radius, radius, radius - mBorder1Breadth / 2f, mBorder1Paint);
-
-            if (mBorder2Breadth > 0) {
-                canvas.drawCircle(radius, radius, radius - mBorder1Breadth - mBorder2Breadth / 2f, mBorder2Paint);
-            }
+        if (ring != null) {
+            canvas.drawBitmap(ring, 0, 0, null);
+        } else if (bordered) {
+            strokeRing(canvas, min);
         }
 
         clear(canvas);
 
-        if (!bitmap.equals(toTransform)) {
-            pool.put(bitmap);
+        return result;
+    }
+
+    /**
+     * 获取 size 尺寸的边框环
+     */
+    private Bitmap getRing(Context context, int size) {
+        Bitmap ring = OverlayCache.get(getCachedID(), size, size);
+        if (ring == null) {
+            ring = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(ring);
+            strokeRing(canvas, size);
+            clear(canvas);
+            OverlayCache.put(context, getCachedID(), ring);
         }
+        return ring;
+    }
 
-        return result;
+    /**
+     * 在 size 尺寸的画布上描出边框环
+     */
+    private void strokeRing(Canvas canvas, int size) {
+        float radius = size / 2f;
+        canvas.drawCircle(radius, radius, radius - mBorder1Breadth / 2f, mBorder1Paint);
+        if (mBorder2Breadth > 0) {
+            canvas.drawCircle(radius, radius, radius - mBorder1Breadth - mBorder2Breadth / 2f, mBorder2Paint);
+        }
     }
 
     @Override
@@ -18,23 +18,35 @@ package jp.wasabeef.glide.transformations;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
-import android.graphics.RectF;
-import android.graphics.Shader;
+import android.graphics.PorterDuffXfermode;
 
 import androidx.annotation.NonNull;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.util.Preconditions;
 
+import jp.wasabeef.glide.transformations.internal.Drawing;
+import jp.wasabeef.glide.transformations.internal.OverlayCache;
+import jp.wasabeef.glide.transformations.internal.Utils;
+
 public class BorderRoundedCorners extends BaseBorderTransformation {
 
     private static final String ID = "BorderRoundedCorners.";
 
+    /**
+     * 挖空边框环中间图片区域的画笔
+     */
+    private static final Paint RING_CLEAR_PAINT = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    static {
+        RING_CLEAR_PAINT.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+    }
+
     public enum CornerType {
         ALL,
         TOP_LEFT, TOP_RIGHT, BOTTOM_LEFT, BOTTOM_RIGHT,
@@ -46,6 +58,12 @@ public class BorderRoundedCorners extends BaseBorderTransformation {
     private int radius;
     private int diameter;
     private CornerType cornerType;
+    private boolean cropToTarget;
+    /**
+     * 画边框环的画笔：逐层覆盖（透明颜色即为挖空），不与下层混合
+     */
+    private final Paint mRing1Paint;
+    private final Paint mRing2Paint;
 
     public BorderRoundedCorners(int radius) {
         this(radius, CornerType.ALL, 0, 0, 0, 0);
@@ -68,221 +86,288 @@ public class BorderRoundedCorners extends BaseBorderTransformation {
     }
 
     public BorderRoundedCorners(int radius, CornerType cornerType, int border1Width, int border1Color, int border2Width, int border2Color) {
+        this(radius, cornerType, border1Width, border1Color, border2Width, border2Color, false);
+    }
+
+    /**
+     * @param cropToTarget true 时直接在目标尺寸上绘制，图片按 CenterCrop 缩放裁剪，
+     *                     不再先按原图尺寸生成位图
+     */
+    public BorderRoundedCorners(int radius, CornerType cornerType, int border1Width, int border1Color, int border2Width, int border2Color,
+                                boolean cropToTarget) {
         super(border1Width, border1Color, border2Width, border2Color);
         this.radius = radius;
         this.diameter = this.radius * 2;
         this.cornerType = cornerType;
+        this.cropToTarget = cropToTarget;
+        mRing1Paint = newRingPaint(mBorder1Color);
+        mRing2Paint = newRingPaint(mBorder2Color);
+    }
+
+    private static Paint newRingPaint(int color) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        paint.setColor(color);
+        return paint;
     }
 
     @Override
     protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
                                @NonNull Bitmap toTransform, int outWidth, int outHeight) {
-        int width = toTransform.getWidth();
-        int height = toTransform.getHeight();
+        int width = cropToTarget ? outWidth : toTransform.getWidth();
+        int height = cropToTarget ? outHeight : toTransform.getHeight();
+
+        //同样尺寸的边框环只绘制一次，之后直接绘制缓存的位图
+        Bitmap ring = null;
+        if (mBorder1Breadth > 0) {
+            //缓存放不下的尺寸不新建位图，从位图池借一张临时位图画边框环，返回后自动放回
+            ring = OverlayCache.canHold(width, height) ? getRing(context, width, height)
+                    : drawRing(obtainScratch(pool, width, height, Bitmap.Config.ARGB_8888));
+        }
 
         Bitmap bitmap = pool.get(width, height, Bitmap.Config.ARGB_8888);
         bitmap.setHasAlpha(true);
 
-        Canvas canvas = new Canvas(bitmap);
-        Paint paint = new Paint();
-        paint.setAntiAlias(true);
-        paint.setShader(new BitmapShader(toTransform, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
-        drawRoundRect(canvas, paint, width, height);
+        Matrix matrix = Drawing.matrix();
+        if (cropToTarget) {
+            Utils.centerCrop(matrix, toTransform.getWidth(), toTransform.getHeight(), width, height);
+        }
+
+        // 先画圆角形状，再把图片画进形状里
+        Canvas canvas = Drawing.obtainCanvas(bitmap);
+        drawRoundRect(canvas, SHAPE_PAINT, mAllBorder, radius, width, height);
+        canvas.drawBitmap(toTransform, matrix, IMAGE_IN_PAINT);
+
+        //画边框
+        if (ring != null) {
+            canvas.drawBitmap(ring, 0, 0, null);
+        }
+        clear(canvas);
         return bitmap;
     }
 
+    /**
+     * 获取 width x height 的边框环：与图片的形状同心，外圈圆角半径加上边框宽度
+     */
+    private Bitmap getRing(Context context, int width, int height) {
+        Bitmap ring = OverlayCache.get(getCachedID(), width, height);
+        if (ring == null) {
+            ring = drawRing(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+            OverlayCache.put(context, getCachedID(), ring);
+        }
+        return ring;
+    }
+
+    /**
+     * 在透明的 ring 上画出边框环
+     */
+    private Bitmap drawRing(Bitmap ring) {
+        int width = ring.getWidth();
+        int height = ring.getHeight();
+        Canvas canvas = Drawing.obtainCanvas(ring);
+        drawRoundRect(canvas, mRing1Paint, 0, radius + mAllBorder, width, height);
+        if (mBorder2Breadth > 0) {
+            drawRoundRect(canvas, mRing2Paint, mBorder1Breadth, radius + mBorder2Breadth, width, height);
+        }
+        drawRoundRect(canvas, RING_CLEAR_PAINT, mAllBorder, radius, width, height);
+        clear(canvas);
+        return ring;
+    }
+
 
-    private void drawRoundRect(Canvas canvas, Paint paint, float width, float height) {
-        float right = width - mAllBorder;
-        float bottom = height - mAllBorder;
+    private void drawRoundRect(Canvas canvas, Paint paint, float inset, float r, float width, float height) {
+        float right = width - inset;
+        float bottom = height - inset;
 
 
         switch (cornerType) {
             case ALL:
-                canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, right, bottom), radius, radius, paint);
+                canvas.drawRoundRect(Drawing.rect(inset, inset, right, bottom), r, r, paint);
                 break;
             case TOP_LEFT:
-                drawTopLeftRoundRect(canvas, paint, right, bottom);
+                drawTopLeftRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case TOP_RIGHT:
-                drawTopRightRoundRect(canvas, paint, right, bottom);
+                drawTopRightRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case BOTTOM_LEFT:
-                drawBottomLeftRoundRect(canvas, paint, right, bottom);
+                drawBottomLeftRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case BOTTOM_RIGHT:
-                drawBottomRightRoundRect(canvas, paint, right, bottom);
+                drawBottomRightRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case TOP:
-                drawTopRoundRect(canvas, paint, right, bottom);
+                drawTopRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case BOTTOM:
-                drawBottomRoundRect(canvas, paint, right, bottom);
+                drawBottomRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case LEFT:
-                drawLeftRoundRect(canvas, paint, right, bottom);
+                drawLeftRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case RIGHT:
-                drawRightRoundRect(canvas, paint, right, bottom);
+                drawRightRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case OTHER_TOP_LEFT:
-                drawOtherTopLeftRoundRect(canvas, paint, right, bottom);
+                drawOtherTopLeftRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case OTHER_TOP_RIGHT:
-                drawOtherTopRightRoundRect(canvas, paint, right, bottom);
+                drawOtherTopRightRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case OTHER_BOTTOM_LEFT:
-                drawOtherBottomLeftRoundRect(canvas, paint, right, bottom);
+                drawOtherBottomLeftRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case OTHER_BOTTOM_RIGHT:
-                drawOtherBottomRightRoundRect(canvas, paint, right, bottom);
+                drawOtherBottomRightRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case DIAGONAL_FROM_TOP_LEFT:
-                drawDiagonalFromTopLeftRoundRect(canvas, paint, right, bottom);
+                drawDiagonalFromTopLeftRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             case DIAGONAL_FROM_TOP_RIGHT:
-                drawDiagonalFromTopRightRoundRect(canvas, paint, right, bottom);
+                drawDiagonalFromTopRightRoundRect(canvas, paint, inset, r, right, bottom);
                 break;
             default:
-                canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, right, bottom), radius, radius, paint);
+                canvas.drawRoundRect(Drawing.rect(inset, inset, right, bottom), r, r, paint);
                 break;
         }
     }
 
-    private void drawTopLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, mAllBorder + diameter, mAllBorder + diameter), radius,
-                radius, paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder + radius, mAllBorder + radius, bottom), paint);
-        canvas.drawRect(new RectF(mAllBorder + radius, mAllBorder, right, bottom), paint);
+    private void drawTopLeftRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, inset, inset + 2 * r, inset + 2 * r), r,
+                r, paint);
+        canvas.drawRect(Drawing.rect(inset, inset + r, inset + r, bottom), paint);
+        canvas.drawRect(Drawing.rect(inset + r, inset, right, bottom), paint);
     }
 
-    private void drawTopRightRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(right - diameter, mAllBorder, right, mAllBorder + diameter), radius,
-                radius, paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder, right - radius, bottom), paint);
-        canvas.drawRect(new RectF(right - radius, mAllBorder + radius, right, bottom), paint);
+    private void drawTopRightRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(right - 2 * r, inset, right, inset + 2 * r), r,
+                r, paint);
+        canvas.drawRect(Drawing.rect(inset, inset, right - r, bottom), paint);
+        canvas.drawRect(Drawing.rect(right - r, inset + r, right, bottom), paint);
     }
 
-    private void drawBottomLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, bottom - diameter, mAllBorder + diameter, bottom), radius,
-                radius, paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder, mAllBorder + diameter, bottom - radius), paint);
-        canvas.drawRect(new RectF(mAllBorder + radius, mAllBorder, right, bottom), paint);
+    private void drawBottomLeftRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, bottom - 2 * r, inset + 2 * r, bottom), r,
+                r, paint);
+        canvas.drawRect(Drawing.rect(inset, inset, inset + 2 * r, bottom - r), paint);
+        canvas.drawRect(Drawing.rect(inset + r, inset, right, bottom), paint);
     }
 
-    private void drawBottomRightRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(right - diameter, bottom - diameter, right, bottom), radius,
-                radius, paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder, right - radius, bottom), paint);
-        canvas.drawRect(new RectF(right - radius, mAllBorder, right, bottom - radius), paint);
+    private void drawBottomRightRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(right - 2 * r, bottom - 2 * r, right, bottom), r,
+                r, paint);
+        canvas.drawRect(Drawing.rect(inset, inset, right - r, bottom), paint);
+        canvas.drawRect(Drawing.rect(right - r, inset, right, bottom - r), paint);
     }
 
-    private void drawTopRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, right, mAllBorder + diameter), radius, radius,
+    private void drawTopRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, inset, right, inset + 2 * r), r, r,
                 paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder + radius, right, bottom), paint);
+        canvas.drawRect(Drawing.rect(inset, inset + r, right, bottom), paint);
     }
 
-    private void drawBottomRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, bottom - diameter, right, bottom), radius, radius,
+    private void drawBottomRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, bottom - 2 * r, right, bottom), r, r,
                 paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder, right, bottom - radius), paint);
+        canvas.drawRect(Drawing.rect(inset, inset, right, bottom - r), paint);
     }
 
-    private void drawLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, mAllBorder + diameter, bottom), radius, radius,
+    private void drawLeftRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, inset, inset + 2 * r, bottom), r, r,
                 paint);
-        canvas.drawRect(new RectF(mAllBorder + radius, mAllBorder, right, bottom), paint);
+        canvas.drawRect(Drawing.rect(inset + r, inset, right, bottom), paint);
     }
 
-    private void drawRightRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(right - diameter, mAllBorder, right, bottom), radius, radius, paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder, right - radius, bottom), paint);
+    private void drawRightRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(right - 2 * r, inset, right, bottom), r, r, paint);
+        canvas.drawRect(Drawing.rect(inset, inset, right - r, bottom), paint);
     }
 
-    private void drawOtherTopLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, bottom - diameter, right, bottom), radius, radius,
+    private void drawOtherTopLeftRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, bottom - 2 * r, right, bottom), r, r,
                 paint);
-        canvas.drawRoundRect(new RectF(right - diameter, mAllBorder, right, bottom), radius, radius, paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder, right - radius, bottom - radius), paint);
+        canvas.drawRoundRect(Drawing.rect(right - 2 * r, inset, right, bottom), r, r, paint);
+        canvas.drawRect(Drawing.rect(inset, inset, right - r, bottom - r), paint);
     }
 
-    private void drawOtherTopRightRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, mAllBorder + diameter, bottom), radius, radius,
+    private void drawOtherTopRightRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, inset, inset + 2 * r, bottom), r, r,
                 paint);
-        canvas.drawRoundRect(new RectF(mAllBorder, bottom - diameter, right, bottom), radius, radius,
+        canvas.drawRoundRect(Drawing.rect(inset, bottom - 2 * r, right, bottom), r, r,
                 paint);
-        canvas.drawRect(new RectF(mAllBorder + radius, mAllBorder, right, bottom - radius), paint);
+        canvas.drawRect(Drawing.rect(inset + r, inset, right, bottom - r), paint);
     }
 
-    private void drawOtherBottomLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, right, mAllBorder + diameter), radius, radius,
+    private void drawOtherBottomLeftRoundRect(Canvas canvas, Paint paint, float inset, float r, float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, inset, right, inset + 2 * r), r, r,
                 paint);
-        canvas.drawRoundRect(new RectF(right - diameter, mAllBorder, right, bottom), radius, radius, paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder + radius, right - radius, bottom), paint);
+        canvas.drawRoundRect(Drawing.rect(right - 2 * r, inset, right, bottom), r, r, paint);
+        canvas.drawRect(Drawing.rect(inset, inset + r, right - r, bottom), paint);
     }
 
-    private void drawOtherBottomRightRoundRect(Canvas canvas, Paint paint, float right,
-                                               float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, right, mAllBorder + diameter), radius, radius,
+    private void drawOtherBottomRightRoundRect(Canvas canvas, Paint paint, float inset, float r,
+                                               float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, inset, right, inset + 2 * r), r, r,
                 paint);
-        canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, mAllBorder + diameter, bottom), radius, radius,
+        canvas.drawRoundRect(Drawing.rect(inset, inset, inset + 2 * r, bottom), r, r,
                 paint);
-        canvas.drawRect(new RectF(mAllBorder + radius, mAllBorder + radius, right, bottom), paint);
+        canvas.drawRect(Drawing.rect(inset + r, inset + r, right, bottom), paint);
     }
 
-    private void drawDiagonalFromTopLeftRoundRect(Canvas canvas, Paint paint, float right,
-                                                  float bottom) {
-        canvas.drawRoundRect(new RectF(mAllBorder, mAllBorder, mAllBorder + diameter, mAllBorder + diameter), radius,
-                radius, paint);
-        canvas.drawRoundRect(new RectF(right - diameter, bottom - diameter, right, bottom), radius,
-                radius, paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder + radius, right - diameter, bottom), paint);
-        canvas.drawRect(new RectF(mAllBorder + diameter, mAllBorder, right, bottom - radius), paint);
+    private void drawDiagonalFromTopLeftRoundRect(Canvas canvas, Paint paint, float inset, float r,
+                                                  float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(inset, inset, inset + 2 * r, inset + 2 * r), r,
+                r, paint);
+        canvas.drawRoundRect(Drawing.rect(right - 2 * r, bottom - 2 * r, right, bottom), r,
+                r, paint);
+        canvas.drawRect(Drawing.rect(inset, inset + r, right - 2 * r, bottom), paint);
+        canvas.drawRect(Drawing.rect(inset + 2 * r, inset, right, bottom - r), paint);
     }
 
-    private void drawDiagonalFromTopRightRoundRect(Canvas canvas, Paint paint, float right,
-                                                   float bottom) {
-        canvas.drawRoundRect(new RectF(right - diameter, mAllBorder, right, mAllBorder + diameter), radius,
-                radius, paint);
-        canvas.drawRoundRect(new RectF(mAllBorder, bottom - diameter, mAllBorder + diameter, bottom), radius,
-                radius, paint);
-        canvas.drawRect(new RectF(mAllBorder, mAllBorder, right - radius, bottom - radius), paint);
-        canvas.drawRect(new RectF(mAllBorder + radius, mAllBorder + radius, right, bottom), paint);
+    private void drawDiagonalFromTopRightRoundRect(Canvas canvas, Paint paint, float inset, float r,
+                                                   float right, float bottom) {
+        canvas.drawRoundRect(Drawing.rect(right - 2 * r, inset, right, inset + 2 * r), r,
+                r, paint);
+        canvas.drawRoundRect(Drawing.rect(inset, bottom - 2 * r, inset + 2 * r, bottom), r,
+                r, paint);
+        canvas.drawRect(Drawing.rect(inset, inset, right - r, bottom - r), paint);
+        canvas.drawRect(Drawing.rect(inset + r, inset + r, right, bottom), paint);
     }
 
 
     public Bitmap roundedCorners(@NonNull BitmapPool pool, @NonNull Bitmap inBitmap, int roundingRadius) {
         Preconditions.checkArgument(roundingRadius > 0, "roundingRadius must be greater than 0.");
 
-        // Alpha is required for this transformation.
-        Bitmap.Config safeConfig = getAlphaSafeConfig(inBitmap);
-        Bitmap toTransform = getAlphaSafeBitmap(pool, inBitmap);
-        Bitmap result = pool.get(toTransform.getWidth(), toTransform.getHeight(), safeConfig);
-
-        result.setHasAlpha(true);
-
-        BitmapShader shader = new BitmapShader(toTransform, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-        Paint paint = new Paint();
-        paint.setAntiAlias(true);
-        paint.setShader(shader);
-        RectF rect = new RectF(0, 0, result.getWidth(), result.getHeight());
-        Canvas canvas = new Canvas(result);
-        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-        canvas.drawRoundRect(rect, roundingRadius, roundingRadius, paint);
-        clear(canvas);
-
-        if (!toTransform.equals(inBitmap)) {
-            pool.put(toTransform);
+        // 可能在 transform 之外调用，自己开一个临时位图的范围
+        int mark = beginScratch();
+        try {
+            // Alpha is required for this transformation.
+            Bitmap.Config safeConfig = getAlphaSafeConfig(inBitmap);
+            Bitmap toTransform = getAlphaSafeBitmap(pool, inBitmap);
+            Bitmap result = pool.get(toTransform.getWidth(), toTransform.getHeight(), safeConfig);
+
+            result.setHasAlpha(true);
+
+            Canvas canvas = Drawing.obtainCanvas(result);
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            canvas.drawRoundRect(Drawing.rect(0, 0, result.getWidth(), result.getHeight()), roundingRadius,
+                    roundingRadius, SHAPE_PAINT);
+            canvas.drawBitmap(toTransform, 0, 0, IMAGE_IN_PAINT);
+            clear(canvas);
+
+            return result;
+        } finally {
+            endScratch(mark, pool, null, false);
         }
-
-        return result;
     }
 
 
     @Override
     protected String getID() {
-        return ID + radius + cornerType + mBorder1Breadth + mBorder1Color + mBorder2Breadth + mBorder2Color;
+        // 之前不绘制边框，有边框时的 id 加上版本
+        return ID + radius + cornerType + mBorder1Breadth + mBorder1Color + mBorder2Breadth + mBorder2Color
+                + (mBorder1Breadth > 0 ? ".2" : "")
+                + (cropToTarget ? ".cropToTarget" : "");
     }
 
     @Override
@@ -296,7 +381,8 @@ public class BorderRoundedCorners extends BaseBorderTransformation {
                 mBorder1Breadth == that.mBorder1Breadth &&
                 mBorder1Color == that.mBorder1Color &&
                 mBorder2Breadth == that.mBorder2Breadth &&
-                mBorder2Color == that.mBorder2Color;
+                mBorder2Color == that.mBorder2Color &&
+                cropToTarget == that.cropToTarget;
     }
 
 }
@@ -0,0 +1,467 @@
+package jp.wasabeef.glide.transformations;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.RectF;
+import android.os.Build;
+
+import com.bumptech.glide.load.MultiTransformation;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.CenterCrop;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+import jp.wasabeef.glide.transformations.internal.Drawing;
+import jp.wasabeef.glide.transformations.internal.MaskCache;
+import jp.wasabeef.glide.transformations.internal.Utils;
+
+/**
+ * A drop-in replacement for {@link MultiTransformation} that renders runs of geometry, color,
+ * shape and border steps in a single Canvas draw into a single pooled bitmap.
+ *
+ * <ul>
+ * <li>Geometry: {@link CenterCrop}, {@link CropTransformation} and
+ * {@link CropSquareTransformation}. All of them scale to cover their output, so a chain of them
+ * is one scale and translate of the source, and resampling happens once.</li>
+ * <li>Color: any {@link ColorMatrixTransformation} that leaves alpha alone. Color matrices are
+ * per pixel and commute with geometry and masks, so they move into the paint of the draw.</li>
+ * <li>Shape: {@link MaskTransformation}, {@link BorderMask} without borders and
+ * {@link BorderCircleCrop}, at most one per draw. The shape is drawn through the geometry that
+ * follows it, masks from the same cached raster the step itself uses, and the image is drawn into
+ * it with SRC_IN. The borders
+ * of {@link BorderCircleCrop} are stroked on top, in their colors after any later color step.</li>
+ * </ul>
+ *
+ * Every other step, and a second shape, starts a new run and is applied as in a
+ * {@link MultiTransformation}. The disk cache key is the one a {@link MultiTransformation} of the
+ * same steps would write. Results can differ from the unfused chain by resampling and rounding,
+ * as intermediate bitmaps are neither resampled nor clamped to 0..255.
+ */
+public class ChainTransformation implements Transformation<Bitmap> {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.ChainTransformation." + VERSION;
+
+  private static final int OTHER = 0;
+  private static final int GEOMETRY = 1;
+  private static final int COLOR = 2;
+  private static final int SHAPE = 3;
+
+  private final List<Transformation<Bitmap>> steps;
+  private final List<Transformation<Bitmap>> segments;
+
+  @SafeVarargs
+  public ChainTransformation(@NonNull Transformation<Bitmap>... steps) {
+    this(Arrays.asList(steps));
+  }
+
+  /**
+   * @param steps transformations in the order they would run in a {@link MultiTransformation}.
+   */
+  public ChainTransformation(@NonNull List<? extends Transformation<Bitmap>> steps) {
+    if (steps.isEmpty()) {
+      throw new IllegalArgumentException("ChainTransformation must contain at least one step");
+    }
+    this.steps = Collections.unmodifiableList(new ArrayList<Transformation<Bitmap>>(steps));
+
+    segments = new ArrayList<>();
+    List<Transformation<Bitmap>> run = new ArrayList<>();
+    boolean shaped = false;
+    for (Transformation<Bitmap> step : steps) {
+      int kind = kindOf(step);
+      if (kind == OTHER || (kind == SHAPE && shaped)) {
+        flush(run, segments);
+        shaped = false;
+      }
+      if (kind == OTHER) {
+        segments.add(step);
+      } else {
+        run.add(step);
+        shaped |= kind == SHAPE;
+      }
+    }
+    flush(run, segments);
+  }
+
+  private static int kindOf(Transformation<Bitmap> step) {
+    // Exact classes only, a subclass may draw differently.
+    Class<?> type = step.getClass();
+    if (type == CenterCrop.class || type == CropTransformation.class
+        || type == CropSquareTransformation.class) {
+      return GEOMETRY;
+    }
+    if (type == MaskTransformation.class || type == BorderCircleCrop.class
+        || (type == BorderMask.class && ((BorderMask) step).mAllBorder == 0)) {
+      return SHAPE;
+    }
+    if (step instanceof ColorMatrixTransformation
+        && keepsAlpha(((ColorMatrixTransformation) step).getColorMatrix())) {
+      return COLOR;
+    }
+    return OTHER;
+  }
+
+  private static boolean keepsAlpha(ColorMatrix matrix) {
+    float[] m = matrix.getArray();
+    return m[15] == 0 && m[16] == 0 && m[17] == 0 && m[18] == 1 && m[19] == 0;
+  }
+
+  private static void flush(List<Transformation<Bitmap>> run,
+                            List<Transformation<Bitmap>> segments) {
+    if (run.size() == 1) {
+      segments.add(run.get(0));
+    } else if (run.size() > 1) {
+      segments.add(new SinglePass(run));
+    }
+    run.clear();
+  }
+
+  @NonNull
+  @Override
+  public Resource<Bitmap> transform(@NonNull Context context, @NonNull Resource<Bitmap> resource,
+                                    int outWidth, int outHeight) {
+    // The same bookkeeping as MultiTransformation.
+    Resource<Bitmap> previous = resource;
+    for (Transformation<Bitmap> segment : segments) {
+      Resource<Bitmap> transformed = segment.transform(context, previous, outWidth, outHeight);
+      if (!previous.equals(resource) && !previous.equals(transformed)) {
+        previous.recycle();
+      }
+      previous = transformed;
+    }
+    return previous;
+  }
+
+  @NonNull
+  public List<Transformation<Bitmap>> getSteps() {
+    return steps;
+  }
+
+  /**
+   * How {@link #getSteps()} is rendered, each entry one of the steps or a single draw of several.
+   */
+  @NonNull
+  List<Transformation<Bitmap>> getSegments() {
+    return segments;
+  }
+
+  @Override
+  public String toString() {
+    return "ChainTransformation(steps=" + steps + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ChainTransformation && ((ChainTransformation) o).steps.equals(steps);
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode() + steps.hashCode();
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    // Exactly what MultiTransformation writes for the same steps.
+    for (Transformation<Bitmap> step : steps) {
+      step.updateDiskCacheKey(messageDigest);
+    }
+  }
+
+  /**
+   * Replays a run of geometry, color and shape steps as matrices and draws the source once.
+   */
+  private static final class SinglePass extends BitmapTransformation {
+
+    private static final int PAINT_FLAGS = Paint.DITHER_FLAG | Paint.FILTER_BITMAP_FLAG;
+    private static final Paint CIRCLE_PAINT = new Paint(PAINT_FLAGS | Paint.ANTI_ALIAS_FLAG);
+    private static final Paint MASK_PAINT = new Paint(PAINT_FLAGS);
+
+    private static final ThreadLocal<Plan> plans = new ThreadLocal<Plan>() {
+      @Override
+      protected Plan initialValue() {
+        return new Plan();
+      }
+    };
+
+    private final List<Transformation<Bitmap>> steps;
+    // Everything that depends on the steps alone, the geometry depends on the sizes too.
+    private final Paint paint;
+    private final Paint border1Paint;
+    private final Paint border2Paint;
+
+    SinglePass(List<Transformation<Bitmap>> steps) {
+      this.steps = new ArrayList<>(steps);
+
+      ColorMatrix color = null;
+      Transformation<Bitmap> shape = null;
+      // Color steps after the shape, which also apply to its borders.
+      ColorMatrix borderColor = null;
+      for (Transformation<Bitmap> t : steps) {
+        if (t instanceof ColorMatrixTransformation) {
+          ColorMatrix m = ((ColorMatrixTransformation) t).getColorMatrix();
+          color = concat(color, m);
+          if (shape != null) {
+            borderColor = concat(borderColor, m);
+          }
+        } else if (t instanceof BorderCircleCrop || t instanceof MaskTransformation
+            || t instanceof BorderMask) {
+          shape = t;
+        }
+      }
+
+      paint = new Paint(PAINT_FLAGS);
+      if (color != null) {
+        paint.setColorFilter(new ColorMatrixColorFilter(color));
+      }
+      if (shape != null) {
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
+      }
+      if (shape instanceof BorderCircleCrop) {
+        BorderCircleCrop crop = (BorderCircleCrop) shape;
+        border1Paint = crop.mBorder1Breadth > 0 ? filter(crop.mBorder1Paint, borderColor) : null;
+        border2Paint = crop.mBorder2Breadth > 0 ? filter(crop.mBorder2Paint, borderColor) : null;
+      } else {
+        border1Paint = null;
+        border2Paint = null;
+      }
+    }
+
+    @Override
+    protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                               @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+      int width = toTransform.getWidth();
+      int height = toTransform.getHeight();
+
+      Plan plan = plans.get();
+      // Source to output coordinates.
+      Matrix image = plan.image;
+      image.reset();
+      // The one shape step, the size of its input and its coordinates to output coordinates.
+      Transformation<Bitmap> shape = null;
+      int shapeWidth = 0;
+      int shapeHeight = 0;
+      Matrix shapeMatrix = plan.shape;
+
+      Matrix step = plan.step;
+      for (Transformation<Bitmap> t : steps) {
+        if (t instanceof ColorMatrixTransformation) {
+          continue;
+        }
+
+        step.reset();
+        if (t instanceof CenterCrop) {
+          Utils.centerCrop(step, width, height, outWidth, outHeight);
+          width = outWidth;
+          height = outHeight;
+        } else if (t instanceof CropTransformation) {
+          CropTransformation crop = (CropTransformation) t;
+          plan.source.set(0, 0, width, height);
+          crop.getTargetRect(width, height, plan.target);
+          step.setRectToRect(plan.source, plan.target, Matrix.ScaleToFit.FILL);
+          width = crop.getWidth();
+          height = crop.getHeight();
+        } else if (t instanceof CropSquareTransformation) {
+          int size = ((CropSquareTransformation) t).getSize(outWidth, outHeight);
+          Utils.centerCrop(step, width, height, size, size);
+          width = size;
+          height = size;
+        } else if (t instanceof BorderCircleCrop) {
+          int min = Math.min(outWidth, outHeight);
+          int border = ((BorderCircleCrop) t).mAllBorder;
+          int destMinEdge = min - border * 2;
+          float scale = Math.max(destMinEdge / (float) width, destMinEdge / (float) height);
+          step.setScale(scale, scale);
+          step.postTranslate((destMinEdge - scale * width) / 2f + border,
+              (destMinEdge - scale * height) / 2f + border);
+          image.postConcat(step);
+          width = min;
+          height = min;
+          shape = t;
+          shapeWidth = min;
+          shapeHeight = min;
+          shapeMatrix.reset();
+          continue;
+        } else {
+          // MaskTransformation or BorderMask, drawn over their whole input or, when they crop to
+          // the target, over a center crop of it.
+          boolean cropToTarget = t instanceof MaskTransformation
+              ? ((MaskTransformation) t).isCropToTarget() : ((BorderMask) t).isCropToTarget();
+          if (cropToTarget) {
+            Utils.centerCrop(step, width, height, outWidth, outHeight);
+            image.postConcat(step);
+            width = outWidth;
+            height = outHeight;
+          }
+          shape = t;
+          shapeWidth = width;
+          shapeHeight = height;
+          shapeMatrix.reset();
+          continue;
+        }
+        image.postConcat(step);
+        if (shape != null) {
+          shapeMatrix.postConcat(step);
+        }
+      }
+
+      Bitmap mask = null;
+      if (shape != null && !(shape instanceof BorderCircleCrop)) {
+        int maskId = shape instanceof MaskTransformation
+            ? ((MaskTransformation) shape).getMaskId() : ((BorderMask) shape).getMaskId();
+        // The mask as the step itself rasterizes it, the geometry after it scales the raster.
+        mask = MaskCache.get(context, maskId, shapeWidth, shapeHeight);
+      }
+
+      Bitmap bitmap = pool.get(width, height, getConfig(toTransform, shape != null));
+      bitmap.setHasAlpha(true);
+
+      Canvas canvas = Drawing.obtainCanvas(bitmap);
+      if (shape != null) {
+        canvas.save();
+        canvas.concat(shapeMatrix);
+        if (shape instanceof BorderCircleCrop) {
+          float radius = shapeWidth / 2f;
+          canvas.drawCircle(radius, radius, radius - ((BorderCircleCrop) shape).mAllBorder,
+              CIRCLE_PAINT);
+        } else {
+          canvas.drawBitmap(mask, 0, 0, MASK_PAINT);
+        }
+        canvas.restore();
+      }
+
+      canvas.drawBitmap(toTransform, image, paint);
+
+      if (shape instanceof BorderCircleCrop) {
+        drawBorders(canvas, (BorderCircleCrop) shape, shapeWidth / 2f, shapeMatrix);
+      }
+      Drawing.releaseCanvas(canvas);
+
+      return bitmap;
+    }
+
+    /**
+     * The rings {@link BorderCircleCrop} strokes over its output.
+     */
+    private void drawBorders(Canvas canvas, BorderCircleCrop crop, float radius,
+                             Matrix shapeMatrix) {
+      if (border1Paint == null) {
+        return;
+      }
+      canvas.save();
+      canvas.concat(shapeMatrix);
+      canvas.drawCircle(radius, radius, radius - crop.mBorder1Breadth / 2f, border1Paint);
+      if (border2Paint != null) {
+        canvas.drawCircle(radius, radius,
+            radius - crop.mBorder1Breadth - crop.mBorder2Breadth / 2f, border2Paint);
+      }
+      canvas.restore();
+    }
+
+    private static Paint filter(Paint paint, ColorMatrix matrix) {
+      if (matrix == null) {
+        return paint;
+      }
+      float[] m = matrix.getArray();
+      int color = paint.getColor();
+      int r = Color.red(color);
+      int g = Color.green(color);
+      int b = Color.blue(color);
+      int a = Color.alpha(color);
+
+      Paint filtered = new Paint(paint);
+      filtered.setColor(Color.argb(a,
+          clamp(m[0] * r + m[1] * g + m[2] * b + m[3] * a + m[4]),
+          clamp(m[5] * r + m[6] * g + m[7] * b + m[8] * a + m[9]),
+          clamp(m[10] * r + m[11] * g + m[12] * b + m[13] * a + m[14])));
+      return filtered;
+    }
+
+    private static int clamp(float value) {
+      return Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    private static ColorMatrix concat(ColorMatrix color, ColorMatrix next) {
+      if (color == null) {
+        return new ColorMatrix(next);
+      }
+      color.postConcat(next);
+      return color;
+    }
+
+    private static Bitmap.Config getConfig(Bitmap toTransform, boolean shaped) {
+      Bitmap.Config config = toTransform.getConfig();
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+          && Bitmap.Config.RGBA_F16.equals(config)) {
+        return config;
+      }
+      return shaped || config == null ? Bitmap.Config.ARGB_8888 : config;
+    }
+
+    @Override
+    public String toString() {
+      return "SinglePass(steps=" + steps + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof SinglePass && ((SinglePass) o).steps.equals(steps);
+    }
+
+    @Override
+    public int hashCode() {
+      return ID.hashCode() + steps.hashCode() * 10;
+    }
+
+    @Override
+    public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+      for (Transformation<Bitmap> step : steps) {
+        step.updateDiskCacheKey(messageDigest);
+      }
+    }
+
+    /**
+     * The per-thread matrices and rects a transform plans its draw with.
+     */
+    private static final class Plan {
+      final Matrix image = new Matrix();
+      final Matrix step = new Matrix();
+      final Matrix shape = new Matrix();
+      final RectF source = new RectF();
+      final RectF target = new RectF();
+    }
+  }
+}
@@ -19,6 +19,8 @@ package jp.wasabeef.glide.transformations;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorMatrix;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
@@ -28,17 +30,23 @@ import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import java.security.MessageDigest;
 
 import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.internal.Drawing;
 
-public class ColorFilterTransformation extends BitmapTransformation {
+public class ColorFilterTransformation extends BitmapTransformation
+    implements ColorMatrixTransformation {
 
   private static final int VERSION = 1;
   private static final String ID =
       "jp.wasabeef.glide.transformations.ColorFilterTransformation." + VERSION;
 
   private int color;
+  private final Paint paint;
 
   public ColorFilterTransformation(int color) {
     this.color = color;
+    paint = new Paint();
+    paint.setAntiAlias(true);
+    paint.setColorFilter(new PorterDuffColorFilter(color, PorterDuff.Mode.SRC_ATOP));
   }
 
   @Override
@@ -51,15 +59,30 @@ public class ColorFilterTransformation extends BitmapTransformation {
         toTransform.getConfig() != null ? toTransform.getConfig() : Bitmap.Config.ARGB_8888;
     Bitmap bitmap = pool.get(width, height, config);
 
-    Canvas canvas = new Canvas(bitmap);
-    Paint paint = new Paint();
-    paint.setAntiAlias(true);
-    paint.setColorFilter(new PorterDuffColorFilter(color, PorterDuff.Mode.SRC_ATOP));
+    Canvas canvas = Drawing.obtainCanvas(bitmap);
     canvas.drawBitmap(toTransform, 0, 0, paint);
+    Drawing.releaseCanvas(canvas);
 
     return bitmap;
   }
 
+  /**
+   * SRC_ATOP keeps the alpha of the image and mixes its colors with {@code color} by the alpha
+   * of {@code color}, an affine map of the unpremultiplied colors.
+   */
+  @NonNull
+  @Override
+  public ColorMatrix getColorMatrix() {
+    float alpha = Color.alpha(color) / 255f;
+    float keep = 1 - alpha;
+    return new ColorMatrix(new float[] {
+        keep, 0, 0, 0, Color.red(color) * alpha,
+        0, keep, 0, 0, Color.green(color) * alpha,
+        0, 0, keep, 0, Color.blue(color) * alpha,
+        0, 0, 0, 1, 0
+    });
+  }
+
   @Override
   public String toString() {
     return "ColorFilterTransformation(color=" + color + ")";
@@ -0,0 +1,35 @@
+package jp.wasabeef.glide.transformations;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.graphics.ColorMatrix;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A transformation whose effect on every pixel is a single {@link ColorMatrix}, which lets
+ * {@link FusedColorTransformation} merge several of them into one draw.
+ */
+public interface ColorMatrixTransformation {
+
+  /**
+   * The matrix this transformation applies to unpremultiplied colors. Callers may modify the
+   * returned instance.
+   */
+  @NonNull
+  ColorMatrix getColorMatrix();
+}
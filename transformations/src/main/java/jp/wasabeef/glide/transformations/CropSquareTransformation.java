@@ -18,13 +18,19 @@ package jp.wasabeef.glide.transformations;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.resource.bitmap.TransformationUtils;
 
 import java.security.MessageDigest;
+import java.util.concurrent.locks.Lock;
 
 import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.internal.Drawing;
+import jp.wasabeef.glide.transformations.internal.Utils;
 
 public class CropSquareTransformation extends BitmapTransformation {
 
@@ -32,13 +38,42 @@ public class CropSquareTransformation extends BitmapTransformation {
   private static final String ID =
       "jp.wasabeef.glide.transformations.CropSquareTransformation." + VERSION;
 
+  private static final Paint PAINT = new Paint(Paint.DITHER_FLAG | Paint.FILTER_BITMAP_FLAG);
+
   private int size;
 
   @Override
   protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
                              @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    getSize(outWidth, outHeight);
+    if (toTransform.getWidth() == size && toTransform.getHeight() == size) {
+      return toTransform;
+    }
+
+    // What TransformationUtils.centerCrop draws, without a Matrix and a Canvas per call.
+    Matrix matrix = Drawing.matrix();
+    Utils.centerCrop(matrix, toTransform.getWidth(), toTransform.getHeight(), size, size);
+
+    Bitmap.Config config =
+        toTransform.getConfig() != null ? toTransform.getConfig() : Bitmap.Config.ARGB_8888;
+    Bitmap bitmap = pool.get(size, size, config);
+    bitmap.setHasAlpha(toTransform.hasAlpha());
+
+    Lock lock = TransformationUtils.getBitmapDrawableLock();
+    lock.lock();
+    try {
+      Canvas canvas = Drawing.obtainCanvas(bitmap);
+      canvas.drawBitmap(toTransform, matrix, PAINT);
+      Drawing.releaseCanvas(canvas);
+    } finally {
+      lock.unlock();
+    }
+    return bitmap;
+  }
+
+  int getSize(int outWidth, int outHeight) {
     this.size = Math.max(outWidth, outHeight);
-    return TransformationUtils.centerCrop(pool, toTransform, size, size);
+    return size;
   }
 
   @Override
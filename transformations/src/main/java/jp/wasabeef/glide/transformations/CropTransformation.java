@@ -26,6 +26,7 @@ import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import java.security.MessageDigest;
 
 import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.internal.Drawing;
 
 public class CropTransformation extends BitmapTransformation {
 
@@ -57,8 +58,8 @@ public class CropTransformation extends BitmapTransformation {
   protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
                              @NonNull Bitmap toTransform, int outWidth, int outHeight) {
 
-    width = width == 0 ? toTransform.getWidth() : width;
-    height = height == 0 ? toTransform.getHeight() : height;
+    RectF targetRect = Drawing.rect();
+    getTargetRect(toTransform.getWidth(), toTransform.getHeight(), targetRect);
 
     Bitmap.Config config =
         toTransform.getConfig() != null ? toTransform.getConfig() : Bitmap.Config.ARGB_8888;
@@ -66,20 +67,39 @@ public class CropTransformation extends BitmapTransformation {
 
     bitmap.setHasAlpha(true);
 
-    float scaleX = (float) width / toTransform.getWidth();
-    float scaleY = (float) height / toTransform.getHeight();
+    Canvas canvas = Drawing.obtainCanvas(bitmap);
+    canvas.drawBitmap(toTransform, null, targetRect, null);
+    Drawing.releaseCanvas(canvas);
+
+    return bitmap;
+  }
+
+  /**
+   * Resolves the output size for a {@code sourceWidth} x {@code sourceHeight} input, after which
+   * {@link #getWidth()} and {@link #getHeight()} are valid, and sets {@code targetRect} to where
+   * the input is drawn.
+   */
+  void getTargetRect(int sourceWidth, int sourceHeight, @NonNull RectF targetRect) {
+    width = width == 0 ? sourceWidth : width;
+    height = height == 0 ? sourceHeight : height;
+
+    float scaleX = (float) width / sourceWidth;
+    float scaleY = (float) height / sourceHeight;
     float scale = Math.max(scaleX, scaleY);
 
-    float scaledWidth = scale * toTransform.getWidth();
-    float scaledHeight = scale * toTransform.getHeight();
+    float scaledWidth = scale * sourceWidth;
+    float scaledHeight = scale * sourceHeight;
     float left = (width - scaledWidth) / 2;
     float top = getTop(scaledHeight);
-    RectF targetRect = new RectF(left, top, left + scaledWidth, top + scaledHeight);
+    targetRect.set(left, top, left + scaledWidth, top + scaledHeight);
+  }
 
-    Canvas canvas = new Canvas(bitmap);
-    canvas.drawBitmap(toTransform, null, targetRect, null);
+  int getWidth() {
+    return width;
+  }
 
-    return bitmap;
+  int getHeight() {
+    return height;
   }
 
   private float getTop(float scaledHeight) {
@@ -0,0 +1,197 @@
+package jp.wasabeef.glide.transformations;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.security.MessageDigest;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import jp.wasabeef.glide.transformations.internal.BlurEngine;
+import jp.wasabeef.glide.transformations.internal.BlurEngines;
+import jp.wasabeef.glide.transformations.internal.BlurPlanner;
+import jp.wasabeef.glide.transformations.internal.BoxBlur;
+import jp.wasabeef.glide.transformations.internal.Drawing;
+import jp.wasabeef.glide.transformations.internal.FastBlur;
+import jp.wasabeef.glide.transformations.internal.ParallelBands;
+
+/**
+ * Blurs with an engine from {@link BlurEngines}, by default the one the device was calibrated
+ * for. Wide radii are planned by {@link BlurPlanner} as for RenderScript, whatever the engine, so
+ * the output size never depends on the device. The default engine is always one of the
+ * Gaussian-like engines, which share a cache key, so calibrating again keeps the cache. A named
+ * engine is part of the key, and is used or the load fails: it is never swapped for another.
+ */
+public class EngineBlurTransformation extends BitmapTransformation {
+
+  private static final String TAG = "EngineBlurTransform";
+
+  private static final Paint FILTER_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.EngineBlurTransformation." + VERSION;
+
+  private static int MAX_RADIUS = 25;
+  private static int DEFAULT_DOWN_SAMPLING = 1;
+
+  private int radius;
+  private int sampling;
+  private boolean parallel;
+  @Nullable
+  private String engine;
+
+  public EngineBlurTransformation() {
+    this(MAX_RADIUS, DEFAULT_DOWN_SAMPLING);
+  }
+
+  public EngineBlurTransformation(int radius) {
+    this(radius, DEFAULT_DOWN_SAMPLING);
+  }
+
+  public EngineBlurTransformation(int radius, int sampling) {
+    this(radius, sampling, null);
+  }
+
+  /**
+   * @param engine name of a registered {@link BlurEngine}, {@code null} for the default.
+   */
+  public EngineBlurTransformation(int radius, int sampling, @Nullable String engine) {
+    this(radius, sampling, false, engine);
+  }
+
+  /**
+   * @param parallel blur large bitmaps on all cores, for the engines that support it.
+   */
+  public EngineBlurTransformation(int radius, int sampling, boolean parallel,
+                                  @Nullable String engine) {
+    this.radius = radius;
+    this.sampling = sampling;
+    this.parallel = parallel;
+    this.engine = engine;
+  }
+
+  @Override
+  protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                             @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    BlurEngine blurEngine = getEngine(context);
+
+    int width = toTransform.getWidth();
+    int height = toTransform.getHeight();
+
+    // Every pass stays within the RenderScript limit, which all the built-in engines take.
+    BlurPlanner.Plan plan =
+        BlurPlanner.plan(radius, sampling, width, height, outWidth, outHeight, true);
+    int passRadius = Math.min(plan.radius, blurEngine.getMaxRadius());
+
+    int scaledWidth = Math.max(1, width / plan.sampling);
+    int scaledHeight = Math.max(1, height / plan.sampling);
+
+    Bitmap bitmap = pool.get(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
+
+    Matrix matrix = Drawing.matrix();
+    matrix.setScale(1 / (float) plan.sampling, 1 / (float) plan.sampling);
+    Canvas canvas = Drawing.obtainCanvas(bitmap);
+    canvas.drawBitmap(toTransform, matrix, FILTER_PAINT);
+    Drawing.releaseCanvas(canvas);
+
+    ArrayPool arrayPool = Glide.get(context).getArrayPool();
+    if (plan.engine == BlurPlanner.Engine.BOX) {
+      // Already as small as it may get and too wide for a few passes, as in
+      // SupportRSBlurTransformation.
+      return BoxBlur.blur(bitmap, plan.radius, arrayPool, getExecutor());
+    }
+    for (int i = 0; i < plan.passes; i++) {
+      bitmap = blur(context, blurEngine, bitmap, passRadius, arrayPool);
+    }
+    return bitmap;
+  }
+
+  private Bitmap blur(Context context, BlurEngine blurEngine, Bitmap bitmap, int radius,
+                      ArrayPool arrayPool) {
+    try {
+      return blurEngine.blur(context, bitmap, radius, arrayPool, getExecutor());
+    } catch (RuntimeException e) {
+      if (engine != null) {
+        // The key names this engine, another one's output must not be stored under it.
+        throw e;
+      }
+      // StackBlur shares the default engines' key.
+      Log.w(TAG, blurEngine.getName() + " failed, falling back to StackBlur", e);
+      return FastBlur.blur(bitmap, radius, true, arrayPool, getExecutor());
+    }
+  }
+
+  @NonNull
+  private BlurEngine getEngine(@NonNull Context context) {
+    if (engine == null) {
+      return BlurEngines.getDefault(context);
+    }
+    BlurEngine named = BlurEngines.get(engine);
+    if (named == null) {
+      throw new IllegalArgumentException("No blur engine named " + engine);
+    }
+    if (!named.isAvailable(context)) {
+      throw new IllegalStateException("Blur engine " + engine + " is not available");
+    }
+    return named;
+  }
+
+  @Nullable
+  private Executor getExecutor() {
+    return parallel ? ParallelBands.defaultExecutor() : null;
+  }
+
+  @Override
+  public String toString() {
+    return "EngineBlurTransformation(radius=" + radius + ", sampling=" + sampling
+        + ", engine=" + engine + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof EngineBlurTransformation &&
+        ((EngineBlurTransformation) o).radius == radius &&
+        ((EngineBlurTransformation) o).sampling == sampling &&
+        (engine == null ? ((EngineBlurTransformation) o).engine == null
+            : engine.equals(((EngineBlurTransformation) o).engine));
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode() + radius * 1000 + sampling * 10 + (engine == null ? 0 : engine.hashCode());
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    // The planned size depends only on the arguments and the source, never on the engine. The
+    // default engine is always a Gaussian-like one, and those share a key.
+    String key = engine == null ? ID + radius + sampling : ID + radius + sampling + engine;
+    messageDigest.update(key.getBytes(CHARSET));
+  }
+}
@@ -0,0 +1,172 @@
+package jp.wasabeef.glide.transformations;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+
+import com.bumptech.glide.load.MultiTransformation;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.internal.Drawing;
+
+/**
+ * Applies several {@link ColorMatrixTransformation}s with one concatenated matrix, in a single
+ * draw into a single pooled bitmap instead of one of each per step.
+ *
+ * The disk cache key is the one a {@link MultiTransformation} of the same steps would write.
+ * Each step of an unfused chain clamps its output to 0..255 while the fused matrix only clamps
+ * once, so results differ where an intermediate step saturates.
+ */
+public class FusedColorTransformation extends BitmapTransformation
+    implements ColorMatrixTransformation {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.FusedColorTransformation." + VERSION;
+
+  private final List<Transformation<Bitmap>> steps;
+  private final ColorMatrix colorMatrix;
+  private final Paint paint;
+
+  @SafeVarargs
+  public FusedColorTransformation(@NonNull Transformation<Bitmap>... steps) {
+    this(Arrays.asList(steps));
+  }
+
+  /**
+   * @param steps transformations in the order they would run, each one a
+   *              {@link ColorMatrixTransformation}.
+   */
+  public FusedColorTransformation(@NonNull List<? extends Transformation<Bitmap>> steps) {
+    if (steps.isEmpty()) {
+      throw new IllegalArgumentException("FusedColorTransformation must contain at least one step");
+    }
+    this.steps = Collections.unmodifiableList(new ArrayList<Transformation<Bitmap>>(steps));
+
+    colorMatrix = new ColorMatrix();
+    for (Transformation<Bitmap> step : steps) {
+      if (!(step instanceof ColorMatrixTransformation)) {
+        throw new IllegalArgumentException(step + " is not a ColorMatrixTransformation");
+      }
+      // Later steps apply to the output of earlier ones.
+      colorMatrix.postConcat(((ColorMatrixTransformation) step).getColorMatrix());
+    }
+    paint = new Paint();
+    paint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
+  }
+
+  /**
+   * Replaces every run of consecutive {@link ColorMatrixTransformation}s in {@code chain} with
+   * one {@link FusedColorTransformation}, and wraps the result in a {@link MultiTransformation}
+   * when more than one step is left.
+   */
+  @SafeVarargs
+  @NonNull
+  public static Transformation<Bitmap> fuse(@NonNull Transformation<Bitmap>... chain) {
+    List<Transformation<Bitmap>> fused = new ArrayList<>();
+    List<Transformation<Bitmap>> run = new ArrayList<>();
+    for (Transformation<Bitmap> step : chain) {
+      if (step instanceof ColorMatrixTransformation) {
+        run.add(step);
+      } else {
+        flush(run, fused);
+        fused.add(step);
+      }
+    }
+    flush(run, fused);
+
+    if (fused.size() == 1) {
+      return fused.get(0);
+    }
+    return new MultiTransformation<>(fused);
+  }
+
+  private static void flush(List<Transformation<Bitmap>> run,
+                            List<Transformation<Bitmap>> fused) {
+    if (run.size() == 1) {
+      fused.add(run.get(0));
+    } else if (run.size() > 1) {
+      fused.add(new FusedColorTransformation(run));
+    }
+    run.clear();
+  }
+
+  @Override
+  protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                             @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    int width = toTransform.getWidth();
+    int height = toTransform.getHeight();
+
+    Bitmap.Config config =
+        toTransform.getConfig() != null ? toTransform.getConfig() : Bitmap.Config.ARGB_8888;
+    Bitmap bitmap = pool.get(width, height, config);
+
+    Canvas canvas = Drawing.obtainCanvas(bitmap);
+    canvas.drawBitmap(toTransform, 0, 0, paint);
+    Drawing.releaseCanvas(canvas);
+
+    return bitmap;
+  }
+
+  @NonNull
+  @Override
+  public ColorMatrix getColorMatrix() {
+    return new ColorMatrix(colorMatrix);
+  }
+
+  @NonNull
+  public List<Transformation<Bitmap>> getSteps() {
+    return steps;
+  }
+
+  @Override
+  public String toString() {
+    return "FusedColorTransformation(steps=" + steps + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof FusedColorTransformation &&
+        ((FusedColorTransformation) o).steps.equals(steps);
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode() + steps.hashCode();
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    // Exactly what MultiTransformation writes for the unfused steps.
+    for (Transformation<Bitmap> step : steps) {
+      step.updateDiskCacheKey(messageDigest);
+    }
+  }
+}
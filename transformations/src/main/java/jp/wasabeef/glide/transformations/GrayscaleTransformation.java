@@ -28,13 +28,21 @@ import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import java.security.MessageDigest;
 
 import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.internal.Drawing;
 
-public class GrayscaleTransformation extends BitmapTransformation {
+public class GrayscaleTransformation extends BitmapTransformation
+    implements ColorMatrixTransformation {
 
   private static final int VERSION = 1;
   private static final String ID =
       "jp.wasabeef.glide.transformations.GrayscaleTransformation." + VERSION;
 
+  private static final Paint PAINT = new Paint();
+
+  static {
+    PAINT.setColorFilter(new ColorMatrixColorFilter(grayscale()));
+  }
+
   @Override
   protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
                              @NonNull Bitmap toTransform, int outWidth, int outHeight) {
@@ -45,16 +53,25 @@ public class GrayscaleTransformation extends BitmapTransformation {
         toTransform.getConfig() != null ? toTransform.getConfig() : Bitmap.Config.ARGB_8888;
     Bitmap bitmap = pool.get(width, height, config);
 
-    Canvas canvas = new Canvas(bitmap);
-    ColorMatrix saturation = new ColorMatrix();
-    saturation.setSaturation(0f);
-    Paint paint = new Paint();
-    paint.setColorFilter(new ColorMatrixColorFilter(saturation));
-    canvas.drawBitmap(toTransform, 0, 0, paint);
+    Canvas canvas = Drawing.obtainCanvas(bitmap);
+    canvas.drawBitmap(toTransform, 0, 0, PAINT);
+    Drawing.releaseCanvas(canvas);
 
     return bitmap;
   }
 
+  @NonNull
+  @Override
+  public ColorMatrix getColorMatrix() {
+    return grayscale();
+  }
+
+  private static ColorMatrix grayscale() {
+    ColorMatrix saturation = new ColorMatrix();
+    saturation.setSaturation(0f);
+    return saturation;
+  }
+
   @Override
   public String toString() {
     return "GrayscaleTransformation()";
@@ -3,63 +3,78 @@ package jp.wasabeef.glide.transformations;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.drawable.Drawable;
+import android.graphics.Matrix;
 
 import androidx.annotation.NonNull;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 
+import jp.wasabeef.glide.transformations.internal.Drawing;
+import jp.wasabeef.glide.transformations.internal.MaskCache;
 import jp.wasabeef.glide.transformations.internal.Utils;
 
 public class MaskTransformation extends BaseTransformation {
 
     private static final String ID = "MaskTransformation.";
 
-    private static Paint paint = new Paint();
     private int maskId;
+    private boolean cropToTarget;
 
-    static {
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
+    public MaskTransformation(int maskId) {
+        this(maskId, false);
     }
 
-    public MaskTransformation(int maskId) {
+    /**
+     * @param cropToTarget true 时直接在目标尺寸上绘制，图片按 CenterCrop 缩放裁剪，
+     *                     不再先按原图尺寸生成位图
+     */
+    public MaskTransformation(int maskId, boolean cropToTarget) {
         this.maskId = maskId;
+        this.cropToTarget = cropToTarget;
     }
 
     @Override
     protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool, @NonNull Bitmap toTransform, int outWidth, int outHeight) {
-        int width = toTransform.getWidth();
-        int height = toTransform.getHeight();
+        int width = cropToTarget ? outWidth : toTransform.getWidth();
+        int height = cropToTarget ? outHeight : toTransform.getHeight();
 
-        Bitmap bitmap = getAlphaSafeBitmap(pool, toTransform);
+        Matrix matrix = Drawing.matrix();
+        if (cropToTarget) {
+            Utils.centerCrop(matrix, toTransform.getWidth(), toTransform.getHeight(), width, height);
+        }
+        Bitmap mask = MaskCache.get(context, maskId, width, height);
 
         Bitmap result = pool.get(width, height, getAlphaSafeConfig(toTransform));
         result.setHasAlpha(true);
 
-        Drawable mask = Utils.getMaskDrawable(context.getApplicationContext(), maskId);
-
-        Canvas canvas = new Canvas(result);
-        mask.setBounds(0, 0, width, height);
-        mask.draw(canvas);
-        canvas.drawBitmap(bitmap, 0, 0, paint);
+        // 先画缓存的 ALPHA_8 遮罩，再把原图画进遮罩里
+        Canvas canvas = Drawing.obtainCanvas(result);
+        canvas.drawBitmap(mask, 0, 0, null);
+        canvas.drawBitmap(toTransform, matrix, IMAGE_IN_PAINT);
 
         clear(canvas);
 
         return result;
     }
 
+    int getMaskId() {
+        return maskId;
+    }
+
+    boolean isCropToTarget() {
+        return cropToTarget;
+    }
+
     @Override
     protected String getID() {
-        return ID + maskId;
+        return ID + maskId + (cropToTarget ? ".cropToTarget" : "");
     }
 
     @Override
     public boolean equals(Object o) {
         return o instanceof MaskTransformation &&
-                ((MaskTransformation) o).maskId == maskId;
+                ((MaskTransformation) o).maskId == maskId &&
+                ((MaskTransformation) o).cropToTarget == cropToTarget;
     }
 
 }
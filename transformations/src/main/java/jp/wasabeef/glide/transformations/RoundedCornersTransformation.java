@@ -18,23 +18,35 @@ package jp.wasabeef.glide.transformations;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.graphics.RectF;
-import android.graphics.Shader;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
 
+import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 
 import java.security.MessageDigest;
 
 import androidx.annotation.NonNull;
 
+import jp.wasabeef.glide.transformations.internal.Drawing;
+import jp.wasabeef.glide.transformations.internal.RoundedCorners;
+import jp.wasabeef.glide.transformations.internal.Utils;
+
 public class RoundedCornersTransformation extends BitmapTransformation {
 
   private static final int VERSION = 1;
   private static final String ID = "jp.wasabeef.glide.transformations.RoundedCornersTransformation." + VERSION;
 
+  private static final Paint SHAPE_PAINT = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private static final Paint BITMAP_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+  static {
+    BITMAP_PAINT.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
+  }
+
   public enum CornerType {
     ALL,
     TOP_LEFT, TOP_RIGHT, BOTTOM_LEFT, BOTTOM_RIGHT,
@@ -43,46 +55,141 @@ public class RoundedCornersTransformation extends BitmapTransformation {
     DIAGONAL_FROM_TOP_LEFT, DIAGONAL_FROM_TOP_RIGHT
   }
 
+  public enum Mode {
+    /**
+     * Draws the source into a new bitmap of the same size.
+     */
+    DRAW,
+    /**
+     * Draws a center crop of the source into a new bitmap of the requested size.
+     */
+    CROP_TO_TARGET,
+    /**
+     * Copies the source into a new bitmap of the same size and multiplies the alpha of its
+     * corner blocks, so only radius x radius pixels per corner are rounded and there is no
+     * round rect to fill. The caller's bitmap is never changed. A source too small for its
+     * corners is drawn as with {@link #DRAW}.
+     */
+    CORNERS
+  }
+
   private int radius;
   private int diameter;
   private int margin;
   private CornerType cornerType;
+  private Mode mode;
 
   public RoundedCornersTransformation(int radius, int margin) {
     this(radius, margin, CornerType.ALL);
   }
 
   public RoundedCornersTransformation(int radius, int margin, CornerType cornerType) {
+    this(radius, margin, cornerType, false);
+  }
+
+  /**
+   * @param cropToTarget whether to render straight into a bitmap of the requested size, center
+   *                     cropping the source, instead of at the source size.
+   */
+  public RoundedCornersTransformation(int radius, int margin, CornerType cornerType,
+                                      boolean cropToTarget) {
+    this(radius, margin, cornerType, cropToTarget ? Mode.CROP_TO_TARGET : Mode.DRAW);
+  }
+
+  public RoundedCornersTransformation(int radius, int margin, CornerType cornerType,
+                                      @NonNull Mode mode) {
     this.radius = radius;
     this.diameter = this.radius * 2;
     this.margin = margin;
     this.cornerType = cornerType;
+    this.mode = mode;
   }
 
   @Override
   protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
                              @NonNull Bitmap toTransform, int outWidth, int outHeight) {
-    int width = toTransform.getWidth();
-    int height = toTransform.getHeight();
+    boolean cropToTarget = mode == Mode.CROP_TO_TARGET;
+    int width = cropToTarget ? outWidth : toTransform.getWidth();
+    int height = cropToTarget ? outHeight : toTransform.getHeight();
 
     Bitmap bitmap = pool.get(width, height, Bitmap.Config.ARGB_8888);
     bitmap.setHasAlpha(true);
 
-    Canvas canvas = new Canvas(bitmap);
-    Paint paint = new Paint();
-    paint.setAntiAlias(true);
-    paint.setShader(new BitmapShader(toTransform, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
-    drawRoundRect(canvas, paint, width, height);
+    if (mode == Mode.CORNERS && RoundedCorners.canRound(bitmap, radius, margin)) {
+      // Rounds a bitmap of our own, whoever else holds the source.
+      Canvas canvas = Drawing.obtainCanvas(bitmap);
+      canvas.drawBitmap(toTransform, 0, 0, null);
+      Drawing.releaseCanvas(canvas);
+      RoundedCorners.round(bitmap, radius, margin, getCorners(),
+          Glide.get(context).getArrayPool());
+      return bitmap;
+    }
+
+    Matrix matrix = Drawing.matrix();
+    if (cropToTarget) {
+      Utils.centerCrop(matrix, toTransform.getWidth(), toTransform.getHeight(), width, height);
+    }
+
+    // The shape first, then the image into it: the same pixels as filling the shape with a
+    // BitmapShader of the image, without a shader per image.
+    Canvas canvas = Drawing.obtainCanvas(bitmap);
+    drawRoundRect(canvas, SHAPE_PAINT, width, height);
+    canvas.drawBitmap(toTransform, matrix, BITMAP_PAINT);
+    Drawing.releaseCanvas(canvas);
     return bitmap;
   }
 
+  /**
+   * The corners {@link #drawRoundRect} rounds, each a quarter circle of {@code radius}.
+   */
+  private int getCorners() {
+    switch (cornerType) {
+      case TOP_LEFT:
+        return RoundedCorners.TOP_LEFT;
+      case TOP_RIGHT:
+        return RoundedCorners.TOP_RIGHT;
+      case BOTTOM_LEFT:
+        return RoundedCorners.BOTTOM_LEFT;
+      case BOTTOM_RIGHT:
+        return RoundedCorners.BOTTOM_RIGHT;
+      case TOP:
+        return RoundedCorners.TOP_LEFT | RoundedCorners.TOP_RIGHT;
+      case BOTTOM:
+        return RoundedCorners.BOTTOM_LEFT | RoundedCorners.BOTTOM_RIGHT;
+      case LEFT:
+        return RoundedCorners.TOP_LEFT | RoundedCorners.BOTTOM_LEFT;
+      case RIGHT:
+        return RoundedCorners.TOP_RIGHT | RoundedCorners.BOTTOM_RIGHT;
+      case OTHER_TOP_LEFT:
+        return RoundedCorners.TOP_RIGHT | RoundedCorners.BOTTOM_LEFT
+            | RoundedCorners.BOTTOM_RIGHT;
+      case OTHER_TOP_RIGHT:
+        return RoundedCorners.TOP_LEFT | RoundedCorners.BOTTOM_LEFT
+            | RoundedCorners.BOTTOM_RIGHT;
+      case OTHER_BOTTOM_LEFT:
+        return RoundedCorners.TOP_LEFT | RoundedCorners.TOP_RIGHT
+            | RoundedCorners.BOTTOM_RIGHT;
+      case OTHER_BOTTOM_RIGHT:
+        return RoundedCorners.TOP_LEFT | RoundedCorners.TOP_RIGHT
+            | RoundedCorners.BOTTOM_LEFT;
+      case DIAGONAL_FROM_TOP_LEFT:
+        return RoundedCorners.TOP_LEFT | RoundedCorners.BOTTOM_RIGHT;
+      case DIAGONAL_FROM_TOP_RIGHT:
+        return RoundedCorners.TOP_RIGHT | RoundedCorners.BOTTOM_LEFT;
+      case ALL:
+      default:
+        return RoundedCorners.TOP_LEFT | RoundedCorners.TOP_RIGHT | RoundedCorners.BOTTOM_LEFT
+            | RoundedCorners.BOTTOM_RIGHT;
+    }
+  }
+
   private void drawRoundRect(Canvas canvas, Paint paint, float width, float height) {
     float right = width - margin;
     float bottom = height - margin;
 
     switch (cornerType) {
       case ALL:
-        canvas.drawRoundRect(new RectF(margin, margin, right, bottom), radius, radius, paint);
+        canvas.drawRoundRect(Drawing.rect(margin, margin, right, bottom), radius, radius, paint);
         break;
       case TOP_LEFT:
         drawTopLeftRoundRect(canvas, paint, right, bottom);
@@ -127,117 +234,117 @@ public class RoundedCornersTransformation extends BitmapTransformation {
         drawDiagonalFromTopRightRoundRect(canvas, paint, right, bottom);
         break;
       default:
-        canvas.drawRoundRect(new RectF(margin, margin, right, bottom), radius, radius, paint);
+        canvas.drawRoundRect(Drawing.rect(margin, margin, right, bottom), radius, radius, paint);
         break;
     }
   }
 
   private void drawTopLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(margin, margin, margin + diameter, margin + diameter), radius,
+    canvas.drawRoundRect(Drawing.rect(margin, margin, margin + diameter, margin + diameter), radius,
         radius, paint);
-    canvas.drawRect(new RectF(margin, margin + radius, margin + radius, bottom), paint);
-    canvas.drawRect(new RectF(margin + radius, margin, right, bottom), paint);
+    canvas.drawRect(Drawing.rect(margin, margin + radius, margin + radius, bottom), paint);
+    canvas.drawRect(Drawing.rect(margin + radius, margin, right, bottom), paint);
   }
 
   private void drawTopRightRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(right - diameter, margin, right, margin + diameter), radius,
+    canvas.drawRoundRect(Drawing.rect(right - diameter, margin, right, margin + diameter), radius,
         radius, paint);
-    canvas.drawRect(new RectF(margin, margin, right - radius, bottom), paint);
-    canvas.drawRect(new RectF(right - radius, margin + radius, right, bottom), paint);
+    canvas.drawRect(Drawing.rect(margin, margin, right - radius, bottom), paint);
+    canvas.drawRect(Drawing.rect(right - radius, margin + radius, right, bottom), paint);
   }
 
   private void drawBottomLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(margin, bottom - diameter, margin + diameter, bottom), radius,
+    canvas.drawRoundRect(Drawing.rect(margin, bottom - diameter, margin + diameter, bottom), radius,
         radius, paint);
-    canvas.drawRect(new RectF(margin, margin, margin + diameter, bottom - radius), paint);
-    canvas.drawRect(new RectF(margin + radius, margin, right, bottom), paint);
+    canvas.drawRect(Drawing.rect(margin, margin, margin + diameter, bottom - radius), paint);
+    canvas.drawRect(Drawing.rect(margin + radius, margin, right, bottom), paint);
   }
 
   private void drawBottomRightRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(right - diameter, bottom - diameter, right, bottom), radius,
+    canvas.drawRoundRect(Drawing.rect(right - diameter, bottom - diameter, right, bottom), radius,
         radius, paint);
-    canvas.drawRect(new RectF(margin, margin, right - radius, bottom), paint);
-    canvas.drawRect(new RectF(right - radius, margin, right, bottom - radius), paint);
+    canvas.drawRect(Drawing.rect(margin, margin, right - radius, bottom), paint);
+    canvas.drawRect(Drawing.rect(right - radius, margin, right, bottom - radius), paint);
   }
 
   private void drawTopRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(margin, margin, right, margin + diameter), radius, radius,
+    canvas.drawRoundRect(Drawing.rect(margin, margin, right, margin + diameter), radius, radius,
         paint);
-    canvas.drawRect(new RectF(margin, margin + radius, right, bottom), paint);
+    canvas.drawRect(Drawing.rect(margin, margin + radius, right, bottom), paint);
   }
 
   private void drawBottomRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(margin, bottom - diameter, right, bottom), radius, radius,
+    canvas.drawRoundRect(Drawing.rect(margin, bottom - diameter, right, bottom), radius, radius,
         paint);
-    canvas.drawRect(new RectF(margin, margin, right, bottom - radius), paint);
+    canvas.drawRect(Drawing.rect(margin, margin, right, bottom - radius), paint);
   }
 
   private void drawLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(margin, margin, margin + diameter, bottom), radius, radius,
+    canvas.drawRoundRect(Drawing.rect(margin, margin, margin + diameter, bottom), radius, radius,
         paint);
-    canvas.drawRect(new RectF(margin + radius, margin, right, bottom), paint);
+    canvas.drawRect(Drawing.rect(margin + radius, margin, right, bottom), paint);
   }
 
   private void drawRightRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(right - diameter, margin, right, bottom), radius, radius, paint);
-    canvas.drawRect(new RectF(margin, margin, right - radius, bottom), paint);
+    canvas.drawRoundRect(Drawing.rect(right - diameter, margin, right, bottom), radius, radius, paint);
+    canvas.drawRect(Drawing.rect(margin, margin, right - radius, bottom), paint);
   }
 
   private void drawOtherTopLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(margin, bottom - diameter, right, bottom), radius, radius,
+    canvas.drawRoundRect(Drawing.rect(margin, bottom - diameter, right, bottom), radius, radius,
         paint);
-    canvas.drawRoundRect(new RectF(right - diameter, margin, right, bottom), radius, radius, paint);
-    canvas.drawRect(new RectF(margin, margin, right - radius, bottom - radius), paint);
+    canvas.drawRoundRect(Drawing.rect(right - diameter, margin, right, bottom), radius, radius, paint);
+    canvas.drawRect(Drawing.rect(margin, margin, right - radius, bottom - radius), paint);
   }
 
   private void drawOtherTopRightRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(margin, margin, margin + diameter, bottom), radius, radius,
+    canvas.drawRoundRect(Drawing.rect(margin, margin, margin + diameter, bottom), radius, radius,
         paint);
-    canvas.drawRoundRect(new RectF(margin, bottom - diameter, right, bottom), radius, radius,
+    canvas.drawRoundRect(Drawing.rect(margin, bottom - diameter, right, bottom), radius, radius,
         paint);
-    canvas.drawRect(new RectF(margin + radius, margin, right, bottom - radius), paint);
+    canvas.drawRect(Drawing.rect(margin + radius, margin, right, bottom - radius), paint);
   }
 
   private void drawOtherBottomLeftRoundRect(Canvas canvas, Paint paint, float right, float bottom) {
-    canvas.drawRoundRect(new RectF(margin, margin, right, margin + diameter), radius, radius,
+    canvas.drawRoundRect(Drawing.rect(margin, margin, right, margin + diameter), radius, radius,
         paint);
-    canvas.drawRoundRect(new RectF(right - diameter, margin, right, bottom), radius, radius, paint);
-    canvas.drawRect(new RectF(margin, margin + radius, right - radius, bottom), paint);
+    canvas.drawRoundRect(Drawing.rect(right - diameter, margin, right, bottom), radius, radius, paint);
+    canvas.drawRect(Drawing.rect(margin, margin + radius, right - radius, bottom), paint);
   }
 
   private void drawOtherBottomRightRoundRect(Canvas canvas, Paint paint, float right,
                                              float bottom) {
-    canvas.drawRoundRect(new RectF(margin, margin, right, margin + diameter), radius, radius,
+    canvas.drawRoundRect(Drawing.rect(margin, margin, right, margin + diameter), radius, radius,
         paint);
-    canvas.drawRoundRect(new RectF(margin, margin, margin + diameter, bottom), radius, radius,
+    canvas.drawRoundRect(Drawing.rect(margin, margin, margin + diameter, bottom), radius, radius,
         paint);
-    canvas.drawRect(new RectF(margin + radius, margin + radius, right, bottom), paint);
+    canvas.drawRect(Drawing.rect(margin + radius, margin + radius, right, bottom), paint);
   }
 
   private void drawDiagonalFromTopLeftRoundRect(Canvas canvas, Paint paint, float right,
                                                 float bottom) {
-    canvas.drawRoundRect(new RectF(margin, margin, margin + diameter, margin + diameter), radius,
+    canvas.drawRoundRect(Drawing.rect(margin, margin, margin + diameter, margin + diameter), radius,
         radius, paint);
-    canvas.drawRoundRect(new RectF(right - diameter, bottom - diameter, right, bottom), radius,
+    canvas.drawRoundRect(Drawing.rect(right - diameter, bottom - diameter, right, bottom), radius,
         radius, paint);
-    canvas.drawRect(new RectF(margin, margin + radius, right - diameter, bottom), paint);
-    canvas.drawRect(new RectF(margin + diameter, margin, right, bottom - radius), paint);
+    canvas.drawRect(Drawing.rect(margin, margin + radius, right - diameter, bottom), paint);
+    canvas.drawRect(Drawing.rect(margin + diameter, margin, right, bottom - radius), paint);
   }
 
   private void drawDiagonalFromTopRightRoundRect(Canvas canvas, Paint paint, float right,
                                                  float bottom) {
-    canvas.drawRoundRect(new RectF(right - diameter, margin, right, margin + diameter), radius,
+    canvas.drawRoundRect(Drawing.rect(right - diameter, margin, right, margin + diameter), radius,
         radius, paint);
-    canvas.drawRoundRect(new RectF(margin, bottom - diameter, margin + diameter, bottom), radius,
+    canvas.drawRoundRect(Drawing.rect(margin, bottom - diameter, margin + diameter, bottom), radius,
         radius, paint);
-    canvas.drawRect(new RectF(margin, margin, right - radius, bottom - radius), paint);
-    canvas.drawRect(new RectF(margin + radius, margin + radius, right, bottom), paint);
+    canvas.drawRect(Drawing.rect(margin, margin, right - radius, bottom - radius), paint);
+    canvas.drawRect(Drawing.rect(margin + radius, margin + radius, right, bottom), paint);
   }
 
   @Override
   public String toString() {
     return "RoundedTransformation(radius=" + radius + ", margin=" + margin + ", diameter="
-        + diameter + ", cornerType=" + cornerType.name() + ")";
+        + diameter + ", cornerType=" + cornerType.name() + ", mode=" + mode + ")";
   }
 
   @Override
@@ -246,16 +353,24 @@ public class RoundedCornersTransformation extends BitmapTransformation {
         ((RoundedCornersTransformation) o).radius == radius &&
         ((RoundedCornersTransformation) o).diameter == diameter &&
         ((RoundedCornersTransformation) o).margin == margin &&
-        ((RoundedCornersTransformation) o).cornerType == cornerType;
+        ((RoundedCornersTransformation) o).cornerType == cornerType &&
+        ((RoundedCornersTransformation) o).mode == mode;
   }
 
   @Override
   public int hashCode() {
-    return ID.hashCode() + radius * 10000 + diameter * 1000 + margin * 100 + cornerType.ordinal() * 10;
+    return ID.hashCode() + radius * 10000 + diameter * 1000 + margin * 100 + cornerType.ordinal() * 10
+        + mode.ordinal();
   }
 
   @Override
   public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
-    messageDigest.update((ID + radius + diameter + margin + cornerType).getBytes(CHARSET));
+    String key = ID + radius + diameter + margin + cornerType;
+    if (mode == Mode.CROP_TO_TARGET) {
+      key += "cropToTarget";
+    } else if (mode == Mode.CORNERS) {
+      key += "corners";
+    }
+    messageDigest.update(key.getBytes(CHARSET));
   }
 }
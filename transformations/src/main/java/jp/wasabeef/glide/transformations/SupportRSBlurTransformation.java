@@ -19,20 +19,29 @@ package jp.wasabeef.glide.transformations;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.os.Build;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 
 import java.security.MessageDigest;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import jp.wasabeef.glide.transformations.internal.BlurBackend;
+import jp.wasabeef.glide.transformations.internal.BlurPlanner;
+import jp.wasabeef.glide.transformations.internal.BoxBlur;
+import jp.wasabeef.glide.transformations.internal.Drawing;
 import jp.wasabeef.glide.transformations.internal.FastBlur;
-import jp.wasabeef.glide.transformations.internal.RSBlur;
-import jp.wasabeef.glide.transformations.internal.SupportRSBlur;
+import jp.wasabeef.glide.transformations.internal.ParallelBands;
 
 public class SupportRSBlurTransformation extends BitmapTransformation {
 
+  private static final Paint FILTER_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
   private static final int VERSION = 1;
   private static final String ID =
       "jp.wasabeef.glide.transformations.SupportRSBlurTransformation." + VERSION;
@@ -42,6 +51,7 @@ public class SupportRSBlurTransformation extends BitmapTransformation {
 
   private int radius;
   private int sampling;
+  private boolean parallel;
 
   public SupportRSBlurTransformation() {
     this(MAX_RADIUS, DEFAULT_DOWN_SAMPLING);
@@ -52,8 +62,17 @@ public class SupportRSBlurTransformation extends BitmapTransformation {
   }
 
   public SupportRSBlurTransformation(int radius, int sampling) {
+    this(radius, sampling, false);
+  }
+
+  /**
+   * @param parallel blur large bitmaps on all cores, see {@link FastBlur#PARALLEL_THRESHOLD}.
+   *                 The output is the same either way.
+   */
+  public SupportRSBlurTransformation(int radius, int sampling, boolean parallel) {
     this.radius = radius;
     this.sampling = sampling;
+    this.parallel = parallel;
   }
 
   @Override
@@ -62,32 +81,53 @@ public class SupportRSBlurTransformation extends BitmapTransformation {
 
     int width = toTransform.getWidth();
     int height = toTransform.getHeight();
-    int scaledWidth = width / sampling;
-    int scaledHeight = height / sampling;
+
+    // Radii above what RenderScript accepts are reached by downsampling further instead.
+    BlurPlanner.Plan plan = BlurPlanner.plan(radius, sampling, width, height, outWidth, outHeight,
+        BlurBackend.detect(context) != BlurBackend.Backend.JAVA);
+
+    int scaledWidth = width / plan.sampling;
+    int scaledHeight = height / plan.sampling;
 
     Bitmap bitmap = pool.get(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
 
-    Canvas canvas = new Canvas(bitmap);
-    canvas.scale(1 / (float) sampling, 1 / (float) sampling);
-    Paint paint = new Paint();
-    paint.setFlags(Paint.FILTER_BITMAP_FLAG);
-    canvas.drawBitmap(toTransform, 0, 0, paint);
-
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
-      try {
-        bitmap = SupportRSBlur.blur(context, bitmap, radius);
-      } catch (NoClassDefFoundError e) {
-        bitmap = RSBlur.blur(context, bitmap, radius);
-      } catch (RuntimeException e) {
-        bitmap = FastBlur.blur(bitmap, radius, true);
-      }
-    } else {
-      bitmap = FastBlur.blur(bitmap, radius, true);
+    Matrix matrix = Drawing.matrix();
+    matrix.setScale(1 / (float) plan.sampling, 1 / (float) plan.sampling);
+    Canvas canvas = Drawing.obtainCanvas(bitmap);
+    canvas.drawBitmap(toTransform, matrix, FILTER_PAINT);
+    Drawing.releaseCanvas(canvas);
+
+    ArrayPool arrayPool = Glide.get(context).getArrayPool();
+    switch (plan.engine) {
+      case RENDER_SCRIPT:
+        for (int i = 0; i < plan.passes; i++) {
+          bitmap = renderScriptBlur(context, bitmap, plan.radius, arrayPool);
+        }
+        break;
+      case BOX:
+        bitmap = BoxBlur.blur(bitmap, plan.radius, arrayPool, getExecutor());
+        break;
+      case STACK:
+      default:
+        bitmap = FastBlur.blur(bitmap, plan.radius, true, arrayPool, getExecutor());
+        break;
     }
 
     return bitmap;
   }
 
+  private Bitmap renderScriptBlur(Context context, Bitmap bitmap, int radius,
+                                  ArrayPool arrayPool) {
+    Bitmap blurred = BlurBackend.blur(context, bitmap, radius);
+    return blurred != null
+        ? blurred : FastBlur.blur(bitmap, radius, true, arrayPool, getExecutor());
+  }
+
+  @Nullable
+  private Executor getExecutor() {
+    return parallel ? ParallelBands.defaultExecutor() : null;
+  }
+
   @Override
   public String toString() {
     return "SupportRSBlurTransformation(radius=" + radius + ", sampling=" + sampling + ")";
@@ -107,6 +147,9 @@ public class SupportRSBlurTransformation extends BitmapTransformation {
 
   @Override
   public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
-    messageDigest.update((ID + radius + sampling).getBytes(CHARSET));
+    // Radii within the RenderScript limit keep their original key and output.
+    String key = radius <= BlurPlanner.MAX_RENDER_SCRIPT_RADIUS
+        ? ID + radius + sampling : ID + radius + sampling + "planned";
+    messageDigest.update(key.getBytes(CHARSET));
   }
 }
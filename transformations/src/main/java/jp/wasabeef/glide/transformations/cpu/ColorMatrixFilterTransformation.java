@@ -0,0 +1,88 @@
+package jp.wasabeef.glide.transformations.cpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.BitmapTransformation;
+import jp.wasabeef.glide.transformations.ColorMatrixTransformation;
+import jp.wasabeef.glide.transformations.internal.Drawing;
+
+/**
+ * Base class for the filters that are a single color matrix. The matrix is applied by
+ * {@link Canvas} in one draw, no GL context or render thread is involved.
+ *
+ * Android applies color filters to unpremultiplied colors while GPUImage works on premultiplied
+ * ones, the results are identical for opaque images.
+ */
+public abstract class ColorMatrixFilterTransformation extends BitmapTransformation
+    implements ColorMatrixTransformation {
+
+  @NonNull
+  private final ColorMatrix colorMatrix;
+  private final Paint paint;
+
+  protected ColorMatrixFilterTransformation(@NonNull ColorMatrix colorMatrix) {
+    this.colorMatrix = colorMatrix;
+    paint = new Paint();
+    paint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
+  }
+
+  @Override
+  protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                             @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    int width = toTransform.getWidth();
+    int height = toTransform.getHeight();
+
+    Bitmap.Config config =
+        toTransform.getConfig() != null ? toTransform.getConfig() : Bitmap.Config.ARGB_8888;
+    Bitmap bitmap = pool.get(width, height, config);
+
+    Canvas canvas = Drawing.obtainCanvas(bitmap);
+    canvas.drawBitmap(toTransform, 0, 0, paint);
+    Drawing.releaseCanvas(canvas);
+
+    return bitmap;
+  }
+
+  @NonNull
+  @Override
+  public ColorMatrix getColorMatrix() {
+    return new ColorMatrix(colorMatrix);
+  }
+
+  /**
+   * {@code scale * c + offset} on the color channels, {@code offset} in 0..255 units.
+   */
+  @NonNull
+  static ColorMatrix scaleAndOffset(float scale, float offset) {
+    return new ColorMatrix(new float[] {
+        scale, 0, 0, 0, offset,
+        0, scale, 0, 0, offset,
+        0, 0, scale, 0, offset,
+        0, 0, 0, 1, 0
+    });
+  }
+}
@@ -0,0 +1,56 @@
+package jp.wasabeef.glide.transformations.cpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.security.MessageDigest;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Invert all the colors in the image. The CPU counterpart of
+ * {@link jp.wasabeef.glide.transformations.gpu.InvertFilterTransformation}.
+ */
+public class InvertFilterTransformation extends ColorMatrixFilterTransformation {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.cpu.InvertFilterTransformation." + VERSION;
+
+  public InvertFilterTransformation() {
+    super(scaleAndOffset(-1, 255));
+  }
+
+  @Override
+  public String toString() {
+    return "InvertFilterTransformation()";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof InvertFilterTransformation;
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode();
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    messageDigest.update((ID).getBytes(CHARSET));
+  }
+}
@@ -0,0 +1,95 @@
+package jp.wasabeef.glide.transformations.cpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.security.MessageDigest;
+
+import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.BitmapTransformation;
+import jp.wasabeef.glide.transformations.internal.FastBlur;
+import jp.wasabeef.glide.transformations.internal.Kuwahara;
+import jp.wasabeef.glide.transformations.internal.ParallelBands;
+
+/**
+ * Kuwahara all the colors in the image, without GL. The CPU counterpart of
+ * {@link jp.wasabeef.glide.transformations.gpu.KuwaharaFilterTransformation}; the cost does not
+ * grow with the radius, see {@link Kuwahara}.
+ *
+ * The radius to sample from when creating the brush-stroke effect, with a default of 25.
+ */
+public class KuwaharaFilterTransformation extends BitmapTransformation {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.cpu.KuwaharaFilterTransformation." + VERSION;
+
+  private int radius;
+  private boolean parallel;
+
+  public KuwaharaFilterTransformation() {
+    this(25);
+  }
+
+  public KuwaharaFilterTransformation(int radius) {
+    this(radius, false);
+  }
+
+  /**
+   * @param parallel process large bitmaps on all cores, see {@link FastBlur#PARALLEL_THRESHOLD}.
+   */
+  public KuwaharaFilterTransformation(int radius, boolean parallel) {
+    this.radius = radius;
+    this.parallel = parallel;
+  }
+
+  @Override
+  protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                             @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    Bitmap bitmap = pool.get(toTransform.getWidth(), toTransform.getHeight(),
+        Bitmap.Config.ARGB_8888);
+    Kuwahara.filter(toTransform, bitmap, radius, Glide.get(context).getArrayPool(),
+        parallel ? ParallelBands.defaultExecutor() : null);
+    return bitmap;
+  }
+
+  @Override
+  public String toString() {
+    return "KuwaharaFilterTransformation(radius=" + radius + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof KuwaharaFilterTransformation &&
+        ((KuwaharaFilterTransformation) o).radius == radius;
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode() + radius * 10;
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    messageDigest.update((ID + radius).getBytes(CHARSET));
+  }
+}
@@ -0,0 +1,95 @@
+package jp.wasabeef.glide.transformations.cpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.security.MessageDigest;
+
+import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.BitmapTransformation;
+import jp.wasabeef.glide.transformations.internal.FastBlur;
+import jp.wasabeef.glide.transformations.internal.ParallelBands;
+import jp.wasabeef.glide.transformations.internal.Pixelate;
+
+/**
+ * Applies a Pixelation effect to the image, without GL. The CPU counterpart of
+ * {@link jp.wasabeef.glide.transformations.gpu.PixelationFilterTransformation}, every cell is
+ * filled with its mean color, see {@link Pixelate}.
+ *
+ * The pixel with a default of 10.0, the side of a cell rounded to whole pixels.
+ */
+public class PixelationFilterTransformation extends BitmapTransformation {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.cpu.PixelationFilterTransformation." + VERSION;
+
+  private float pixel;
+  private boolean parallel;
+
+  public PixelationFilterTransformation() {
+    this(10f);
+  }
+
+  public PixelationFilterTransformation(float pixel) {
+    this(pixel, false);
+  }
+
+  /**
+   * @param parallel process large bitmaps on all cores, see {@link FastBlur#PARALLEL_THRESHOLD}.
+   */
+  public PixelationFilterTransformation(float pixel, boolean parallel) {
+    this.pixel = pixel;
+    this.parallel = parallel;
+  }
+
+  @Override
+  protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                             @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    Bitmap bitmap = pool.get(toTransform.getWidth(), toTransform.getHeight(),
+        Bitmap.Config.ARGB_8888);
+    Pixelate.pixelate(toTransform, bitmap, Math.round(pixel), Glide.get(context).getArrayPool(),
+        parallel ? ParallelBands.defaultExecutor() : null);
+    return bitmap;
+  }
+
+  @Override
+  public String toString() {
+    return "PixelationFilterTransformation(pixel=" + pixel + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof PixelationFilterTransformation &&
+        ((PixelationFilterTransformation) o).pixel == pixel;
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode() + (int) (pixel * 10);
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    messageDigest.update((ID + pixel).getBytes(CHARSET));
+  }
+}
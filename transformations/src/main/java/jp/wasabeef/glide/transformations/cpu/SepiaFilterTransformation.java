@@ -0,0 +1,89 @@
+package jp.wasabeef.glide.transformations.cpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.graphics.ColorMatrix;
+
+import java.security.MessageDigest;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Applies a simple sepia effect, the CPU counterpart of
+ * {@link jp.wasabeef.glide.transformations.gpu.SepiaFilterTransformation}.
+ *
+ * The intensity with a default of 1.0.
+ */
+public class SepiaFilterTransformation extends ColorMatrixFilterTransformation {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.cpu.SepiaFilterTransformation." + VERSION;
+
+  // GPUImageSepiaToneFilter's matrix.
+  private static final float[] SEPIA = {
+      0.3588f, 0.7044f, 0.1368f,
+      0.2990f, 0.5870f, 0.1140f,
+      0.2392f, 0.4696f, 0.0912f
+  };
+
+  private float intensity;
+
+  public SepiaFilterTransformation() {
+    this(1.0f);
+  }
+
+  public SepiaFilterTransformation(float intensity) {
+    super(sepia(intensity));
+    this.intensity = intensity;
+  }
+
+  /**
+   * {@code intensity * sepia + (1 - intensity) * identity}, as the GPUImage shader mixes them.
+   */
+  static ColorMatrix sepia(float intensity) {
+    float[] m = new float[20];
+    for (int row = 0; row < 3; row++) {
+      for (int col = 0; col < 3; col++) {
+        m[row * 5 + col] = intensity * SEPIA[row * 3 + col] + (row == col ? 1 - intensity : 0);
+      }
+    }
+    m[18] = 1;
+    return new ColorMatrix(m);
+  }
+
+  @Override
+  public String toString() {
+    return "SepiaFilterTransformation(intensity=" + intensity + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof SepiaFilterTransformation &&
+        ((SepiaFilterTransformation) o).intensity == intensity;
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode() + (int) (intensity * 10);
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    messageDigest.update((ID + intensity).getBytes(CHARSET));
+  }
+}
@@ -0,0 +1,85 @@
+package jp.wasabeef.glide.transformations.cpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.security.MessageDigest;
+
+import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.BitmapTransformation;
+import jp.wasabeef.glide.transformations.internal.FastBlur;
+import jp.wasabeef.glide.transformations.internal.ParallelBands;
+import jp.wasabeef.glide.transformations.internal.Sobel;
+
+/**
+ * The CPU counterpart of {@link jp.wasabeef.glide.transformations.gpu.SketchFilterTransformation},
+ * see {@link Sobel#sketch}.
+ */
+public class SketchFilterTransformation extends BitmapTransformation {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.cpu.SketchFilterTransformation." + VERSION;
+
+  private boolean parallel;
+
+  public SketchFilterTransformation() {
+    this(false);
+  }
+
+  /**
+   * @param parallel process large bitmaps on all cores, see {@link FastBlur#PARALLEL_THRESHOLD}.
+   */
+  public SketchFilterTransformation(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  @Override
+  protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                             @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    Bitmap bitmap = pool.get(toTransform.getWidth(), toTransform.getHeight(),
+        Bitmap.Config.ARGB_8888);
+    Sobel.sketch(toTransform, bitmap, Glide.get(context).getArrayPool(),
+        parallel ? ParallelBands.defaultExecutor() : null);
+    return bitmap;
+  }
+
+  @Override
+  public String toString() {
+    return "SketchFilterTransformation()";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof SketchFilterTransformation;
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode();
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    messageDigest.update((ID).getBytes(CHARSET));
+  }
+}
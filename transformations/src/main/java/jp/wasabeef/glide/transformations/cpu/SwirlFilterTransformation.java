@@ -0,0 +1,105 @@
+package jp.wasabeef.glide.transformations.cpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.PointF;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.security.MessageDigest;
+
+import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.BitmapTransformation;
+import jp.wasabeef.glide.transformations.internal.FastBlur;
+import jp.wasabeef.glide.transformations.internal.ParallelBands;
+import jp.wasabeef.glide.transformations.internal.Swirl;
+
+/**
+ * Creates a swirl distortion on the image, without GL. The CPU counterpart of
+ * {@link jp.wasabeef.glide.transformations.gpu.SwirlFilterTransformation}, see {@link Swirl}.
+ */
+public class SwirlFilterTransformation extends BitmapTransformation {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.cpu.SwirlFilterTransformation." + VERSION;
+
+  private float radius;
+  private float angle;
+  private PointF center;
+  private boolean parallel;
+
+  public SwirlFilterTransformation() {
+    this(.5f, 1.0f, new PointF(0.5f, 0.5f));
+  }
+
+  /**
+   * @param radius from 0.0 to 1.0, default 0.5
+   * @param angle  minimum 0.0, default 1.0
+   * @param center default (0.5, 0.5)
+   */
+  public SwirlFilterTransformation(float radius, float angle, PointF center) {
+    this(radius, angle, center, false);
+  }
+
+  /**
+   * @param parallel process large bitmaps on all cores, see {@link FastBlur#PARALLEL_THRESHOLD}.
+   */
+  public SwirlFilterTransformation(float radius, float angle, PointF center, boolean parallel) {
+    this.radius = radius;
+    this.angle = angle;
+    this.center = center;
+    this.parallel = parallel;
+  }
+
+  @Override
+  protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                             @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    Bitmap bitmap = pool.get(toTransform.getWidth(), toTransform.getHeight(),
+        Bitmap.Config.ARGB_8888);
+    Swirl.swirl(toTransform, bitmap, radius, angle, center.x, center.y,
+        Glide.get(context).getArrayPool(), parallel ? ParallelBands.defaultExecutor() : null);
+    return bitmap;
+  }
+
+  @Override
+  public String toString() {
+    return "SwirlFilterTransformation(radius=" + radius + ",angle=" + angle + ",center="
+        + center.toString() + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof SwirlFilterTransformation &&
+        ((SwirlFilterTransformation) o).radius == radius &&
+        ((SwirlFilterTransformation) o).angle == angle &&
+        ((SwirlFilterTransformation) o).center.equals(center.x, center.y);
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode() + (int) (radius * 1000) + (int) (angle * 10) + center.hashCode();
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    messageDigest.update((ID + radius + angle + center.x + center.y).getBytes(CHARSET));
+  }
+}
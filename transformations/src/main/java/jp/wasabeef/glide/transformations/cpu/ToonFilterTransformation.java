@@ -0,0 +1,100 @@
+package jp.wasabeef.glide.transformations.cpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.security.MessageDigest;
+
+import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.BitmapTransformation;
+import jp.wasabeef.glide.transformations.internal.FastBlur;
+import jp.wasabeef.glide.transformations.internal.ParallelBands;
+import jp.wasabeef.glide.transformations.internal.Sobel;
+
+/**
+ * The CPU counterpart of {@link jp.wasabeef.glide.transformations.gpu.ToonFilterTransformation},
+ * see {@link Sobel#toon}.
+ *
+ * The threshold at which to apply the edges, default of 0.2.
+ * The levels of quantization for the posterization of colors within the scene,
+ * with a default of 10.0.
+ */
+public class ToonFilterTransformation extends BitmapTransformation {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.cpu.ToonFilterTransformation." + VERSION;
+
+  private float threshold;
+  private float quantizationLevels;
+  private boolean parallel;
+
+  public ToonFilterTransformation() {
+    this(.2f, 10.0f);
+  }
+
+  public ToonFilterTransformation(float threshold, float quantizationLevels) {
+    this(threshold, quantizationLevels, false);
+  }
+
+  /**
+   * @param parallel process large bitmaps on all cores, see {@link FastBlur#PARALLEL_THRESHOLD}.
+   */
+  public ToonFilterTransformation(float threshold, float quantizationLevels, boolean parallel) {
+    this.threshold = threshold;
+    this.quantizationLevels = quantizationLevels;
+    this.parallel = parallel;
+  }
+
+  @Override
+  protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                             @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    Bitmap bitmap = pool.get(toTransform.getWidth(), toTransform.getHeight(),
+        Bitmap.Config.ARGB_8888);
+    Sobel.toon(toTransform, bitmap, threshold, quantizationLevels,
+        Glide.get(context).getArrayPool(), parallel ? ParallelBands.defaultExecutor() : null);
+    return bitmap;
+  }
+
+  @Override
+  public String toString() {
+    return "ToonFilterTransformation(threshold=" + threshold + ",quantizationLevels="
+        + quantizationLevels + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ToonFilterTransformation &&
+        ((ToonFilterTransformation) o).threshold == threshold &&
+        ((ToonFilterTransformation) o).quantizationLevels == quantizationLevels;
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode() + (int) (threshold * 1000) + (int) (quantizationLevels * 10);
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    messageDigest.update((ID + threshold + quantizationLevels).getBytes(CHARSET));
+  }
+}
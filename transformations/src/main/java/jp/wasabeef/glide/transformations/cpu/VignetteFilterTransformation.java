@@ -0,0 +1,183 @@
+package jp.wasabeef.glide.transformations.cpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.PointF;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import jp.wasabeef.glide.transformations.BitmapTransformation;
+import jp.wasabeef.glide.transformations.internal.FastBlur;
+import jp.wasabeef.glide.transformations.internal.ParallelBands;
+
+/**
+ * Performs a vignetting effect, fading out the image at the edges. The CPU counterpart of
+ * {@link jp.wasabeef.glide.transformations.gpu.VignetteFilterTransformation}.
+ * The directional intensity of the vignetting,
+ * with a default of x = 0.5, y = 0.5, start = 0, end = 0.75
+ */
+public class VignetteFilterTransformation extends BitmapTransformation {
+
+  private static final int VERSION = 1;
+  private static final String ID =
+      "jp.wasabeef.glide.transformations.cpu.VignetteFilterTransformation." + VERSION;
+
+  /**
+   * Entries of the falloff table, which is indexed by the squared distance so that no pixel
+   * needs a square root.
+   */
+  private static final int FALLOFF_SIZE = 1024;
+
+  private PointF center;
+  private float[] vignetteColor;
+  private float vignetteStart;
+  private float vignetteEnd;
+  private boolean parallel;
+
+  private final int[] falloff = new int[FALLOFF_SIZE + 1];
+
+  public VignetteFilterTransformation() {
+    this(new PointF(0.5f, 0.5f), new float[]{0.0f, 0.0f, 0.0f}, 0.0f, 0.75f);
+  }
+
+  public VignetteFilterTransformation(PointF center, float[] color, float start, float end) {
+    this(center, color, start, end, false);
+  }
+
+  /**
+   * @param parallel process large bitmaps on all cores, see {@link FastBlur#PARALLEL_THRESHOLD}.
+   */
+  public VignetteFilterTransformation(PointF center, float[] color, float start, float end,
+                                      boolean parallel) {
+    this.center = center;
+    vignetteColor = color;
+    vignetteStart = start;
+    vignetteEnd = end;
+    this.parallel = parallel;
+
+    // smoothstep(start, end, d) in 1/256 steps, sampled evenly in d * d.
+    float start2 = start * start;
+    float range2 = end * end - start2;
+    for (int i = 0; i <= FALLOFF_SIZE; i++) {
+      float d = (float) Math.sqrt(start2 + range2 * i / FALLOFF_SIZE);
+      float t = end > start ? Math.min(1, Math.max(0, (d - start) / (end - start)))
+          : i == 0 ? 0 : 1;
+      falloff[i] = Math.round(t * t * (3 - 2 * t) * 256);
+    }
+  }
+
+  @Override
+  protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
+                             @NonNull Bitmap toTransform, int outWidth, int outHeight) {
+    final int width = toTransform.getWidth();
+    final int height = toTransform.getHeight();
+
+    ArrayPool arrayPool = Glide.get(context).getArrayPool();
+    final int[] pix = arrayPool.get(width * height, int[].class);
+    toTransform.getPixels(pix, 0, width, 0, 0, width, height);
+
+    // Glide's ArrayPool only holds int and byte arrays, the floats are kept as their bits.
+    final int[] dx2 = arrayPool.get(width, int[].class);
+    for (int x = 0; x < width; x++) {
+      float dx = (x + 0.5f) / width - center.x;
+      dx2[x] = Float.floatToRawIntBits(dx * dx);
+    }
+
+    final float start2 = vignetteStart * vignetteStart;
+    float range2 = vignetteEnd * vignetteEnd - start2;
+    // With end <= start the vignette is a hard edge at start: the index is then +/-infinity,
+    // or NaN exactly on the edge, which the int cast turns into 0 and the table maps to 0.
+    final float scale = range2 > 0 ? FALLOFF_SIZE / range2 : Float.POSITIVE_INFINITY;
+    final int vr = Math.round(vignetteColor[0] * 255);
+    final int vg = Math.round(vignetteColor[1] * 255);
+    final int vb = Math.round(vignetteColor[2] * 255);
+
+    if (!parallel || width * height < FastBlur.PARALLEL_THRESHOLD) {
+      darken(pix, dx2, width, height, start2, scale, vr, vg, vb, 0, height);
+    } else {
+      ParallelBands.run(ParallelBands.defaultExecutor(), height, new ParallelBands.Task() {
+        @Override
+        public void run(int start, int end) {
+          darken(pix, dx2, width, height, start2, scale, vr, vg, vb, start, end);
+        }
+      });
+    }
+    arrayPool.put(dx2);
+
+    Bitmap bitmap = pool.get(width, height, Bitmap.Config.ARGB_8888);
+    bitmap.setPixels(pix, 0, width, 0, 0, width, height);
+    arrayPool.put(pix);
+
+    return bitmap;
+  }
+
+  private void darken(int[] pix, int[] dx2, int width, int height, float start2, float scale,
+                      int vr, int vg, int vb, int start, int end) {
+    for (int y = start; y < end; y++) {
+      float dy = (y + 0.5f) / height - center.y;
+      float dy2 = dy * dy;
+      for (int x = 0, i = y * width; x < width; x++, i++) {
+        int index = (int) ((Float.intBitsToFloat(dx2[x]) + dy2 - start2) * scale);
+        int p = falloff[Math.max(0, Math.min(FALLOFF_SIZE, index))];
+        int c = pix[i];
+        int r = (c >> 16) & 0xff;
+        int g = (c >> 8) & 0xff;
+        int b = c & 0xff;
+        r += ((vr - r) * p) >> 8;
+        g += ((vg - g) * p) >> 8;
+        b += ((vb - b) * p) >> 8;
+        // GPUImage writes an opaque result as well.
+        pix[i] = 0xff000000 | (r << 16) | (g << 8) | b;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "VignetteFilterTransformation(center=" + center.toString() + ",color=" + Arrays.toString(
+        vignetteColor) + ",start=" + vignetteStart + ",end=" + vignetteEnd + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof VignetteFilterTransformation &&
+        ((VignetteFilterTransformation) o).center.equals(center.x, center.y) &&
+        Arrays.equals(((VignetteFilterTransformation) o).vignetteColor, vignetteColor) &&
+        ((VignetteFilterTransformation) o).vignetteStart == vignetteStart &&
+        ((VignetteFilterTransformation) o).vignetteEnd == vignetteEnd;
+  }
+
+  @Override
+  public int hashCode() {
+    return ID.hashCode() + center.hashCode() + Arrays.hashCode(vignetteColor) +
+        (int) (vignetteStart * 100) + (int) (vignetteEnd * 10);
+  }
+
+  @Override
+  public void updateDiskCacheKey(@NonNull MessageDigest messageDigest) {
+    messageDigest.update((ID + center + Arrays.toString(vignetteColor) + vignetteStart
+        + vignetteEnd).getBytes(CHARSET));
+  }
+}
@@ -0,0 +1,37 @@
+package jp.wasabeef.glide.transformations.gpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import androidx.annotation.NonNull;
+import jp.co.cyberagent.android.gpuimage.filter.GPUImageFilter;
+
+/**
+ * Applies a {@link GPUImageFilter} to a bitmap. {@link SharedFilterRenderer} is the real one,
+ * tests can install a fake through {@link GPUFilterTransformation#setRenderer}.
+ */
+public interface FilterRenderer {
+
+  /**
+   * @return a new bitmap of the size of {@code bitmap}, preferably taken from {@code pool}.
+   */
+  @NonNull
+  Bitmap render(@NonNull GPUImageFilter filter, @NonNull Bitmap bitmap, @NonNull BitmapPool pool);
+}
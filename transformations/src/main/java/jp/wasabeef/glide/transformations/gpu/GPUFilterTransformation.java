@@ -24,7 +24,8 @@ import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import java.security.MessageDigest;
 
 import androidx.annotation.NonNull;
-import jp.co.cyberagent.android.gpuimage.GPUImage;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import jp.co.cyberagent.android.gpuimage.filter.GPUImageFilter;
 import jp.wasabeef.glide.transformations.BitmapTransformation;
 
@@ -35,6 +36,9 @@ public class GPUFilterTransformation extends BitmapTransformation {
       "jp.wasabeef.glide.transformations.gpu.GPUFilterTransformation." + VERSION;
   private static final byte[] ID_BYTES = ID.getBytes(CHARSET);
 
+  @Nullable
+  private static volatile FilterRenderer renderer;
+
   private GPUImageFilter gpuImageFilter;
 
   public GPUFilterTransformation(GPUImageFilter filter) {
@@ -44,11 +48,20 @@ public class GPUFilterTransformation extends BitmapTransformation {
   @Override
   protected Bitmap transform(@NonNull Context context, @NonNull BitmapPool pool,
                              @NonNull Bitmap toTransform, int outWidth, int outHeight) {
-    GPUImage gpuImage = new GPUImage(context);
-    gpuImage.setImage(toTransform);
-    gpuImage.setFilter(gpuImageFilter);
+    FilterRenderer renderer = GPUFilterTransformation.renderer;
+    if (renderer == null) {
+      renderer = SharedFilterRenderer.get(context);
+    }
+    return renderer.render(gpuImageFilter, toTransform, pool);
+  }
 
-    return gpuImage.getBitmapWithFilterApplied();
+  /**
+   * Replaces the {@link SharedFilterRenderer} of every gpu transformation, {@code null} restores
+   * it. Meant for tests, which can render with a fake on the JVM.
+   */
+  @VisibleForTesting
+  public static void setRenderer(@Nullable FilterRenderer renderer) {
+    GPUFilterTransformation.renderer = renderer;
   }
 
   @Override
@@ -25,7 +25,9 @@ import jp.co.cyberagent.android.gpuimage.filter.GPUImageKuwaharaFilter;
  * Kuwahara all the colors in the image.
  *
  * The radius to sample from when creating the brush-stroke effect, with a default of 25.
- * The larger the radius, the slower the filter.
+ * The larger the radius, the slower the filter. For one whose cost does not grow with the
+ * radius, and needs no GL, see
+ * {@link jp.wasabeef.glide.transformations.cpu.KuwaharaFilterTransformation}.
  */
 public class KuwaharaFilterTransformation extends GPUFilterTransformation {
 
@@ -53,7 +55,8 @@ public class KuwaharaFilterTransformation extends GPUFilterTransformation {
 
   @Override
   public boolean equals(Object o) {
-    return o instanceof KuwaharaFilterTransformation;
+    return o instanceof KuwaharaFilterTransformation &&
+        ((KuwaharaFilterTransformation) o).radius == radius;
   }
 
   @Override
@@ -52,7 +52,8 @@ public class PixelationFilterTransformation extends GPUFilterTransformation {
 
   @Override
   public boolean equals(Object o) {
-    return o instanceof PixelationFilterTransformation;
+    return o instanceof PixelationFilterTransformation &&
+        ((PixelationFilterTransformation) o).pixel == pixel;
   }
 
   @Override
@@ -0,0 +1,353 @@
+package jp.wasabeef.glide.transformations.gpu;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+import javax.microedition.khronos.opengles.GL10;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import jp.co.cyberagent.android.gpuimage.GPUImageRenderer;
+import jp.co.cyberagent.android.gpuimage.filter.GPUImageFilter;
+
+/**
+ * One GL thread, one EGL context and one {@link GPUImageRenderer} for the whole process.
+ *
+ * {@code new GPUImage(context)} per bitmap set up and tore down a context, a surface and a
+ * renderer every time. Here they live until {@link #release()} or a memory trim: every bitmap
+ * size gets a pbuffer surface on the shared context (the last few are kept), and switching
+ * filters only recompiles a program. All GL work, including the parameter updates that filters
+ * queue with {@code runOnDraw}, runs on the one thread.
+ */
+public final class SharedFilterRenderer implements FilterRenderer {
+
+  private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+  private static final int EGL_OPENGL_ES2_BIT = 4;
+  private static final int MAX_CACHED_SURFACES = 4;
+
+  private static SharedFilterRenderer instance;
+
+  private ExecutorService glThread;
+
+  // Everything below is only touched on the GL thread.
+  private EGL10 egl;
+  private EGLDisplay eglDisplay;
+  private EGLConfig eglConfig;
+  private EGLContext eglContext;
+  private GL10 gl;
+  private final Map<Long, EGLSurface> surfaces =
+      new LinkedHashMap<Long, EGLSurface>(MAX_CACHED_SURFACES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, EGLSurface> eldest) {
+          if (size() > MAX_CACHED_SURFACES) {
+            egl.eglDestroySurface(eglDisplay, eldest.getValue());
+            return true;
+          }
+          return false;
+        }
+      };
+  private GPUImageRenderer renderer;
+  private GPUImageFilter currentFilter;
+  private int imageWidth;
+  private int imageHeight;
+  private ByteBuffer pixelBuffer;
+  private byte[] rows;
+
+  private final ComponentCallbacks2 callbacks = new ComponentCallbacks2() {
+    @Override
+    public void onTrimMemory(int level) {
+      if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+        release();
+      }
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+      // Nothing to do.
+    }
+
+    @Override
+    public void onLowMemory() {
+      release();
+    }
+  };
+
+  private SharedFilterRenderer(Context context) {
+    context.registerComponentCallbacks(callbacks);
+  }
+
+  @NonNull
+  public static synchronized SharedFilterRenderer get(@NonNull Context context) {
+    if (instance == null) {
+      instance = new SharedFilterRenderer(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  @NonNull
+  @Override
+  public Bitmap render(@NonNull final GPUImageFilter filter, @NonNull final Bitmap bitmap,
+                       @NonNull final BitmapPool pool) {
+    return await(submit(new Callable<Bitmap>() {
+      @Override
+      public Bitmap call() {
+        try {
+          return draw(filter, bitmap, pool);
+        } catch (RuntimeException e) {
+          // Start from a clean context rather than guess what state the failure left behind.
+          destroyContext();
+          throw e;
+        }
+      }
+    }));
+  }
+
+  /**
+   * Runs {@code task} on the GL thread after the renders already queued, for instance to change
+   * a filter parameter outside of its {@code runOnDraw} queue.
+   */
+  public void post(@NonNull final Runnable task) {
+    submit(new Callable<Void>() {
+      @Override
+      public Void call() {
+        task.run();
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Destroys the context and the surfaces once the renders already queued are done. The next
+   * render creates them again.
+   */
+  public void release() {
+    post(new Runnable() {
+      @Override
+      public void run() {
+        destroyContext();
+      }
+    });
+  }
+
+  private synchronized <T> Future<T> submit(Callable<T> task) {
+    if (glThread == null) {
+      glThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+          Thread thread = new Thread(r, "glide-transformations-gl");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return glThread.submit(task);
+  }
+
+  private Bitmap draw(GPUImageFilter filter, Bitmap bitmap, BitmapPool pool) {
+    int width = bitmap.getWidth();
+    int height = bitmap.getHeight();
+
+    if (eglContext == null) {
+      createContext();
+    }
+    makeCurrent(width, height);
+
+    if (renderer == null) {
+      renderer = new GPUImageRenderer(filter);
+      renderer.onSurfaceCreated(gl, eglConfig);
+    } else if (filter != currentFilter) {
+      // Destroys the previous filter, so only the current one ever holds a program.
+      renderer.setFilter(filter);
+    }
+    currentFilter = filter;
+
+    if (width != imageWidth || height != imageHeight) {
+      renderer.deleteImage();
+      imageWidth = width;
+      imageHeight = height;
+    }
+    renderer.onSurfaceChanged(gl, width, height);
+    renderer.setImageBitmap(bitmap, false);
+    renderer.onDrawFrame(gl);
+
+    return readPixels(width, height, pool);
+  }
+
+  private Bitmap readPixels(int width, int height, BitmapPool pool) {
+    int rowBytes = width * 4;
+    int size = rowBytes * height;
+    if (pixelBuffer == null || pixelBuffer.capacity() < size) {
+      pixelBuffer = ByteBuffer.allocateDirect(size);
+    }
+    if (rows == null || rows.length < rowBytes * 2) {
+      rows = new byte[rowBytes * 2];
+    }
+    pixelBuffer.clear();
+    GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE,
+        pixelBuffer);
+    flipRows(pixelBuffer, rowBytes, height, rows);
+    pixelBuffer.limit(size);
+
+    // The pixels are premultiplied RGBA, what an ARGB_8888 bitmap holds in memory: copied as
+    // they are, like GPUImage's own readback. setPixels would premultiply them a second time.
+    Bitmap result = pool.get(width, height, Bitmap.Config.ARGB_8888);
+    result.copyPixelsFromBuffer(pixelBuffer);
+    return result;
+  }
+
+  /**
+   * Turns the bottom-up rows {@code glReadPixels} wrote into {@code pixels} upright, through
+   * {@code rows}, room for two of them. Leaves {@code pixels} at position 0.
+   */
+  @VisibleForTesting
+  static void flipRows(@NonNull ByteBuffer pixels, int rowBytes, int height,
+                       @NonNull byte[] rows) {
+    for (int top = 0, bottom = height - 1; top < bottom; top++, bottom--) {
+      pixels.position(top * rowBytes);
+      pixels.get(rows, 0, rowBytes);
+      pixels.position(bottom * rowBytes);
+      pixels.get(rows, rowBytes, rowBytes);
+      pixels.position(bottom * rowBytes);
+      pixels.put(rows, 0, rowBytes);
+      pixels.position(top * rowBytes);
+      pixels.put(rows, rowBytes, rowBytes);
+    }
+    pixels.position(0);
+  }
+
+  private void createContext() {
+    egl = (EGL10) EGLContext.getEGL();
+    eglDisplay = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+    egl.eglInitialize(eglDisplay, new int[2]);
+
+    int[] attributes = {
+        EGL10.EGL_DEPTH_SIZE, 0,
+        EGL10.EGL_STENCIL_SIZE, 0,
+        EGL10.EGL_RED_SIZE, 8,
+        EGL10.EGL_GREEN_SIZE, 8,
+        EGL10.EGL_BLUE_SIZE, 8,
+        EGL10.EGL_ALPHA_SIZE, 8,
+        EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+        EGL10.EGL_NONE
+    };
+    EGLConfig[] configs = new EGLConfig[1];
+    int[] count = new int[1];
+    if (!egl.eglChooseConfig(eglDisplay, attributes, configs, 1, count) || count[0] == 0) {
+      egl.eglTerminate(eglDisplay);
+      throw new IllegalStateException("No EGL config for OpenGL ES 2.0");
+    }
+    eglConfig = configs[0];
+    eglContext = egl.eglCreateContext(eglDisplay, eglConfig, EGL10.EGL_NO_CONTEXT,
+        new int[] { EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE });
+    if (eglContext == null || eglContext == EGL10.EGL_NO_CONTEXT) {
+      eglContext = null;
+      egl.eglTerminate(eglDisplay);
+      throw new IllegalStateException("eglCreateContext failed: " + egl.eglGetError());
+    }
+    gl = (GL10) eglContext.getGL();
+  }
+
+  private void makeCurrent(int width, int height) {
+    long key = ((long) width << 32) | height;
+    EGLSurface surface = surfaces.get(key);
+    if (surface == null) {
+      surface = egl.eglCreatePbufferSurface(eglDisplay, eglConfig,
+          new int[] { EGL10.EGL_WIDTH, width, EGL10.EGL_HEIGHT, height, EGL10.EGL_NONE });
+      if (surface == null || surface == EGL10.EGL_NO_SURFACE) {
+        throw new IllegalStateException("eglCreatePbufferSurface failed: " + egl.eglGetError());
+      }
+      surfaces.put(key, surface);
+    }
+    if (!egl.eglMakeCurrent(eglDisplay, surface, surface, eglContext)) {
+      throw new IllegalStateException("eglMakeCurrent failed: " + egl.eglGetError());
+    }
+  }
+
+  private void destroyContext() {
+    if (eglContext == null) {
+      return;
+    }
+    if (currentFilter != null) {
+      // Lets the filter initialize again on the next context.
+      currentFilter.destroy();
+      currentFilter = null;
+    }
+    renderer = null;
+    imageWidth = imageHeight = 0;
+    pixelBuffer = null;
+    rows = null;
+
+    egl.eglMakeCurrent(eglDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE,
+        EGL10.EGL_NO_CONTEXT);
+    for (Iterator<EGLSurface> it = surfaces.values().iterator(); it.hasNext(); ) {
+      egl.eglDestroySurface(eglDisplay, it.next());
+      it.remove();
+    }
+    egl.eglDestroyContext(eglDisplay, eglContext);
+    egl.eglTerminate(eglDisplay);
+    eglContext = null;
+    gl = null;
+  }
+
+  private static <T> T await(Future<T> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -24,7 +24,8 @@ import androidx.annotation.NonNull;
 import jp.co.cyberagent.android.gpuimage.filter.GPUImageSwirlFilter;
 
 /**
- * Creates a swirl distortion on the image.
+ * Creates a swirl distortion on the image. For one that needs no GL, see
+ * {@link jp.wasabeef.glide.transformations.cpu.SwirlFilterTransformation}.
  */
 public class SwirlFilterTransformation extends GPUFilterTransformation {
 
@@ -66,7 +67,7 @@ public class SwirlFilterTransformation extends GPUFilterTransformation {
   public boolean equals(Object o) {
     return o instanceof SwirlFilterTransformation &&
         ((SwirlFilterTransformation) o).radius == radius &&
-        ((SwirlFilterTransformation) o).angle == radius &&
+        ((SwirlFilterTransformation) o).angle == angle &&
         ((SwirlFilterTransformation) o).center.equals(center.x, center.y);
   }
 
@@ -0,0 +1,162 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Picks the RenderScript implementation once per process.
+ *
+ * The support library is preferred, then the framework, then the pure Java blurs. The first
+ * backend that blurs a 1x1 probe is remembered, so a device without a working RenderScript pays
+ * for the failed initialization once instead of once per image.
+ */
+public final class BlurBackend {
+
+  private static final String TAG = "BlurBackend";
+
+  public enum Backend {
+    SUPPORT_RENDER_SCRIPT, RENDER_SCRIPT, JAVA
+  }
+
+  @Nullable
+  private static volatile Backend backend;
+
+  // Guarded by the class lock, indexed by ordinal.
+  private static final Boolean[] available = new Boolean[Backend.values().length];
+
+  private BlurBackend() {
+    // Utility class.
+  }
+
+  /**
+   * The detected backend, or {@code null} before the first RenderScript blur or
+   * {@link #detect(Context)}.
+   */
+  @Nullable
+  public static Backend current() {
+    return backend;
+  }
+
+  /**
+   * Detects the backend if that has not happened yet. Can be called at startup, off the main
+   * thread, to take the probe out of the first image load.
+   */
+  @NonNull
+  public static Backend detect(@NonNull Context context) {
+    Backend detected = backend;
+    if (detected == null) {
+      synchronized (BlurBackend.class) {
+        detected = backend;
+        if (detected == null) {
+          backend = detected = probe(context, Backend.SUPPORT_RENDER_SCRIPT);
+        }
+      }
+    }
+    return detected;
+  }
+
+  /**
+   * Whether {@code candidate} itself blurs the probe, whichever backend {@link #detect} picked.
+   * Each backend is probed at most once.
+   */
+  public static synchronized boolean isAvailable(@NonNull Context context,
+                                                 @NonNull Backend candidate) {
+    if (candidate == Backend.JAVA) {
+      return true;
+    }
+    Boolean result = available[candidate.ordinal()];
+    if (result == null) {
+      result = blursProbe(context, candidate);
+      available[candidate.ordinal()] = result;
+    }
+    return result;
+  }
+
+  /**
+   * Blurs {@code bitmap} with the detected RenderScript backend.
+   *
+   * @return the blurred bitmap, or {@code null} when RenderScript is not available and the
+   * caller should use a Java blur instead.
+   */
+  @Nullable
+  public static Bitmap blur(@NonNull Context context, @NonNull Bitmap bitmap, int radius) {
+    Backend current = detect(context);
+    while (current != Backend.JAVA) {
+      try {
+        return blur(current, context, bitmap, radius);
+      } catch (RuntimeException | LinkageError e) {
+        // Worked for the probe but not now, stop using it.
+        Log.w(TAG, "Blur failed on " + current, e);
+        current = demote(current, context);
+      }
+    }
+    return null;
+  }
+
+  private static synchronized Backend demote(Backend failed, Context context) {
+    if (backend == failed) {
+      backend = probe(context, next(failed));
+    }
+    return backend;
+  }
+
+  private static Backend probe(Context context, Backend from) {
+    for (Backend candidate = from; candidate != Backend.JAVA; candidate = next(candidate)) {
+      if (isAvailable(context, candidate)) {
+        return candidate;
+      }
+    }
+    return Backend.JAVA;
+  }
+
+  private static boolean blursProbe(Context context, Backend candidate) {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+      return false;
+    }
+
+    Bitmap probe = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+    try {
+      blur(candidate, context, probe, 1);
+      return true;
+    } catch (RuntimeException | LinkageError e) {
+      Log.w(TAG, candidate + " is not available", e);
+      return false;
+    } finally {
+      probe.recycle();
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+  private static Bitmap blur(Backend backend, Context context, Bitmap bitmap, int radius) {
+    if (backend == Backend.SUPPORT_RENDER_SCRIPT) {
+      return SupportRSBlur.blur(context, bitmap, radius);
+    }
+    return RSBlur.blur(context, bitmap, radius);
+  }
+
+  private static Backend next(Backend backend) {
+    return Backend.values()[backend.ordinal() + 1];
+  }
+}
@@ -0,0 +1,64 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A blur implementation that can be registered with {@link BlurEngines}.
+ *
+ * Engines do not produce identical pixels. RenderScript's Gaussian and StackBlur are close enough
+ * that the default engine may switch between them under one cache key, {@link BlurEngines#BOX}
+ * is not, so it is only used when asked for by name. An engine registered to take part in
+ * {@link BlurEngines#calibrate} should approximate the same Gaussian.
+ */
+public interface BlurEngine {
+
+  /**
+   * A stable name, used to look the engine up in {@link BlurEngines}.
+   */
+  @NonNull
+  String getName();
+
+  /**
+   * Whether the engine can run on this device. Called often, so should be cheap after the first
+   * call.
+   */
+  boolean isAvailable(@NonNull Context context);
+
+  /**
+   * The largest radius {@link #blur} accepts.
+   */
+  int getMaxRadius();
+
+  /**
+   * Blurs an ARGB_8888 {@code bitmap}, in place where the engine can.
+   *
+   * @return the blurred bitmap, {@code bitmap} itself or a new one.
+   */
+  @NonNull
+  Bitmap blur(@NonNull Context context, @NonNull Bitmap bitmap, int radius,
+              @Nullable ArrayPool arrayPool, @Nullable Executor executor);
+}
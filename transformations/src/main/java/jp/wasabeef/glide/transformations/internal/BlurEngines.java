@@ -0,0 +1,262 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Registry of {@link BlurEngine}s and the choice of the default one.
+ *
+ * Until {@link #setDefault} or {@link #calibrate} is called the default is the first available
+ * of support RenderScript, framework RenderScript and StackBlur, the order
+ * {@code SupportRSBlurTransformation} has always used.
+ */
+public final class BlurEngines {
+
+  private static final String TAG = "BlurEngines";
+
+  private static final int CALIBRATION_SIZE = 512;
+  private static final int CALIBRATION_RADIUS = 10;
+  private static final int CALIBRATION_RUNS = 3;
+
+  public static final BlurEngine STACK = new BlurEngine() {
+    @NonNull
+    @Override
+    public String getName() {
+      return "stack";
+    }
+
+    @Override
+    public boolean isAvailable(@NonNull Context context) {
+      return true;
+    }
+
+    @Override
+    public int getMaxRadius() {
+      return Integer.MAX_VALUE;
+    }
+
+    @NonNull
+    @Override
+    public Bitmap blur(@NonNull Context context, @NonNull Bitmap bitmap, int radius,
+                       @Nullable ArrayPool arrayPool, @Nullable Executor executor) {
+      return FastBlur.blur(bitmap, radius, true, arrayPool, executor);
+    }
+  };
+
+  public static final BlurEngine BOX = new BlurEngine() {
+    @NonNull
+    @Override
+    public String getName() {
+      return "box";
+    }
+
+    @Override
+    public boolean isAvailable(@NonNull Context context) {
+      return true;
+    }
+
+    @Override
+    public int getMaxRadius() {
+      return BoxBlur.MAX_RADIUS;
+    }
+
+    @NonNull
+    @Override
+    public Bitmap blur(@NonNull Context context, @NonNull Bitmap bitmap, int radius,
+                       @Nullable ArrayPool arrayPool, @Nullable Executor executor) {
+      return BoxBlur.blur(bitmap, radius, arrayPool, executor);
+    }
+  };
+
+  public static final BlurEngine RENDER_SCRIPT = new BlurEngine() {
+    @NonNull
+    @Override
+    public String getName() {
+      return "renderscript";
+    }
+
+    @Override
+    public boolean isAvailable(@NonNull Context context) {
+      // Probed on its own: detect() stops at the support library when that works.
+      return BlurBackend.isAvailable(context, BlurBackend.Backend.RENDER_SCRIPT);
+    }
+
+    @Override
+    public int getMaxRadius() {
+      return BlurPlanner.MAX_RENDER_SCRIPT_RADIUS;
+    }
+
+    @NonNull
+    @Override
+    public Bitmap blur(@NonNull Context context, @NonNull Bitmap bitmap, int radius,
+                       @Nullable ArrayPool arrayPool, @Nullable Executor executor) {
+      return RSBlur.blur(context, bitmap, radius);
+    }
+  };
+
+  public static final BlurEngine SUPPORT_RENDER_SCRIPT = new BlurEngine() {
+    @NonNull
+    @Override
+    public String getName() {
+      return "support-renderscript";
+    }
+
+    @Override
+    public boolean isAvailable(@NonNull Context context) {
+      return BlurBackend.isAvailable(context, BlurBackend.Backend.SUPPORT_RENDER_SCRIPT);
+    }
+
+    @Override
+    public int getMaxRadius() {
+      return BlurPlanner.MAX_RENDER_SCRIPT_RADIUS;
+    }
+
+    @NonNull
+    @Override
+    public Bitmap blur(@NonNull Context context, @NonNull Bitmap bitmap, int radius,
+                       @Nullable ArrayPool arrayPool, @Nullable Executor executor) {
+      return SupportRSBlur.blur(context, bitmap, radius);
+    }
+  };
+
+  private static final List<BlurEngine> engines = new CopyOnWriteArrayList<>();
+
+  @Nullable
+  private static volatile BlurEngine defaultEngine;
+
+  static {
+    engines.add(SUPPORT_RENDER_SCRIPT);
+    engines.add(RENDER_SCRIPT);
+    engines.add(STACK);
+    engines.add(BOX);
+  }
+
+  private BlurEngines() {
+    // Utility class.
+  }
+
+  /**
+   * Adds {@code engine}, replacing any engine registered under the same name.
+   */
+  public static synchronized void register(@NonNull BlurEngine engine) {
+    BlurEngine existing = get(engine.getName());
+    if (existing != null) {
+      engines.remove(existing);
+    }
+    engines.add(engine);
+  }
+
+  @Nullable
+  public static BlurEngine get(@NonNull String name) {
+    for (BlurEngine engine : engines) {
+      if (engine.getName().equals(name)) {
+        return engine;
+      }
+    }
+    return null;
+  }
+
+  @NonNull
+  public static List<BlurEngine> getAll() {
+    return new ArrayList<>(engines);
+  }
+
+  @NonNull
+  public static BlurEngine getDefault(@NonNull Context context) {
+    BlurEngine engine = defaultEngine;
+    if (engine == null) {
+      engine = SUPPORT_RENDER_SCRIPT.isAvailable(context) ? SUPPORT_RENDER_SCRIPT
+          : RENDER_SCRIPT.isAvailable(context) ? RENDER_SCRIPT : STACK;
+      defaultEngine = engine;
+    }
+    return engine;
+  }
+
+  /**
+   * Overrides the default engine, {@code null} goes back to the built-in choice. Transformations
+   * using the default keep their cache key, so {@code engine} should look like StackBlur, which
+   * {@link #BOX} does not.
+   */
+  public static void setDefault(@Nullable BlurEngine engine) {
+    defaultEngine = engine;
+  }
+
+  /**
+   * Times every available engine on a synthetic bitmap and makes the fastest the default.
+   * Takes tens of milliseconds, call it off the main thread, for instance at startup.
+   *
+   * {@link #BOX} never takes part: its output differs visibly from the other engines, and the
+   * default engine must not change what is stored under a transformation's cache key.
+   */
+  @NonNull
+  public static BlurEngine calibrate(@NonNull Context context, @Nullable ArrayPool arrayPool) {
+    int size = CALIBRATION_SIZE;
+    int[] pixels = new int[size * size];
+    for (int i = 0; i < pixels.length; i++) {
+      // Any content blurs in the same time, this only keeps it from being uniform.
+      pixels[i] = 0xff000000 | (i * 0x9e3779b1 >>> 8);
+    }
+    Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+    bitmap.setPixels(pixels, 0, size, 0, 0, size, size);
+
+    BlurEngine fastest = STACK;
+    long best = Long.MAX_VALUE;
+    for (BlurEngine engine : engines) {
+      if (engine == BOX || !engine.isAvailable(context)) {
+        continue;
+      }
+      try {
+        int radius = Math.min(CALIBRATION_RADIUS, engine.getMaxRadius());
+        // The first run pays for class loading and, for RenderScript, context creation.
+        bitmap = engine.blur(context, bitmap, radius, arrayPool, null);
+        long time = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_RUNS; i++) {
+          long start = System.nanoTime();
+          bitmap = engine.blur(context, bitmap, radius, arrayPool, null);
+          time = Math.min(time, System.nanoTime() - start);
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+          Log.d(TAG, engine.getName() + ": " + time / 1000 + "us");
+        }
+        if (time < best) {
+          best = time;
+          fastest = engine;
+        }
+      } catch (RuntimeException | LinkageError e) {
+        Log.w(TAG, engine.getName() + " failed during calibration", e);
+      }
+    }
+    bitmap.recycle();
+
+    defaultEngine = fastest;
+    return fastest;
+  }
+}
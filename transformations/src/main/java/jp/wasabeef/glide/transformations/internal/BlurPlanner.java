@@ -0,0 +1,122 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Plans blurs wider than the 25px RenderScript limit.
+ *
+ * A blur of radius r on an image downsampled by s looks like a blur of radius r * s on the
+ * original, so wide blurs are done on a smaller image instead of with a larger kernel. The cost
+ * then depends on the requested radius and target size rather than on the source resolution.
+ */
+public final class BlurPlanner {
+
+  public enum Engine {
+    RENDER_SCRIPT, STACK, BOX
+  }
+
+  public static final class Plan {
+    /**
+     * Downsample factor applied to the source before blurring.
+     */
+    public final int sampling;
+    /**
+     * Radius of each pass, in downsampled pixels.
+     */
+    public final int radius;
+    public final int passes;
+    @NonNull
+    public final Engine engine;
+
+    Plan(int sampling, int radius, int passes, @NonNull Engine engine) {
+      this.sampling = sampling;
+      this.radius = radius;
+      this.passes = passes;
+      this.engine = engine;
+    }
+
+    @Override
+    public String toString() {
+      return "Plan(sampling=" + sampling + ", radius=" + radius + ", passes=" + passes
+          + ", engine=" + engine + ")";
+    }
+  }
+
+  /**
+   * The largest radius {@code ScriptIntrinsicBlur.setRadius} accepts.
+   */
+  public static final int MAX_RENDER_SCRIPT_RADIUS = 25;
+
+  /**
+   * Below this radius a further downsample starts to show as blockiness after upscaling.
+   */
+  private static final int MIN_RADIUS = 8;
+  private static final int MIN_SIZE = 16;
+  private static final int MAX_RENDER_SCRIPT_PASSES = 4;
+
+  private BlurPlanner() {
+    // Utility class.
+  }
+
+  /**
+   * @param radius       blur radius in pixels of the image downsampled by {@code sampling}, as
+   *                     {@code SupportRSBlurTransformation} has always interpreted it.
+   * @param sampling     the caller's downsample factor, never reduced.
+   * @param renderScript whether a RenderScript blur can be used at all.
+   */
+  @NonNull
+  public static Plan plan(int radius, int sampling, int sourceWidth, int sourceHeight,
+                          int targetWidth, int targetHeight, boolean renderScript) {
+    Engine fallback = renderScript ? Engine.RENDER_SCRIPT : Engine.STACK;
+    if (radius <= MAX_RENDER_SCRIPT_RADIUS) {
+      return new Plan(sampling, radius, 1, fallback);
+    }
+
+    int visualRadius = radius * sampling;
+    int maxSampling = Math.max(sampling, Math.min(sourceWidth, sourceHeight) / MIN_SIZE);
+
+    // Enough downsampling to bring the kernel under the RenderScript limit...
+    int planned = ceilDiv(visualRadius, MAX_RENDER_SCRIPT_RADIUS);
+    // ...and more, down to the target size, as long as the kernel stays wide enough to hide it.
+    int toTarget = Math.min(sourceWidth / Math.max(1, targetWidth),
+        sourceHeight / Math.max(1, targetHeight));
+    planned = Math.max(planned, Math.min(toTarget, visualRadius / MIN_RADIUS));
+    planned = Math.max(sampling, Math.min(planned, maxSampling));
+
+    int plannedRadius = Math.max(1, Math.round(visualRadius / (float) planned));
+    if (plannedRadius <= MAX_RENDER_SCRIPT_RADIUS) {
+      return new Plan(planned, plannedRadius, 1, fallback);
+    }
+
+    // The image is already as small as it may get. Gaussian-like passes add up in variance,
+    // so n passes of r / sqrt(n) approximate one pass of r.
+    double ratio = plannedRadius / (double) MAX_RENDER_SCRIPT_RADIUS;
+    int passes = (int) Math.ceil(ratio * ratio);
+    if (renderScript && passes <= MAX_RENDER_SCRIPT_PASSES) {
+      int passRadius = (int) Math.ceil(plannedRadius / Math.sqrt(passes));
+      return new Plan(planned, Math.min(MAX_RENDER_SCRIPT_RADIUS, passRadius), passes,
+          Engine.RENDER_SCRIPT);
+    }
+    return new Plan(planned, plannedRadius, 1, Engine.BOX);
+  }
+
+  private static int ceilDiv(int a, int b) {
+    return (a + b - 1) / b;
+  }
+}
@@ -0,0 +1,219 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Approximates a Gaussian blur with three running-sum box blurs per axis.
+ *
+ * Every output pixel costs one add and one subtract per channel and pass, whatever the radius,
+ * which makes it cheaper than {@link FastBlur} for bulk thumbnails. The box sizes are chosen so
+ * that the combined variance matches the StackBlur kernel of the same radius; the result looks
+ * the same but is not pixel-identical.
+ */
+public class BoxBlur {
+
+  private static final int PASSES = 3;
+
+  /**
+   * Larger radii are clamped, beyond this the undivided sums of three passes overflow an int.
+   */
+  public static final int MAX_RADIUS = 200;
+
+  /**
+   * {@link #boxRadii} for every radius, worked out once rather than per blur.
+   */
+  private static final int[][] BOX_RADII = new int[MAX_RADIUS + 1][];
+
+  static {
+    for (int radius = 0; radius <= MAX_RADIUS; radius++) {
+      BOX_RADII[radius] = computeBoxRadii(radius);
+    }
+  }
+
+  public static Bitmap blur(Bitmap bitmap, int radius, @Nullable ArrayPool arrayPool,
+                            @Nullable Executor executor) {
+    if (radius < 1) {
+      return bitmap;
+    }
+
+    int w = bitmap.getWidth();
+    int h = bitmap.getHeight();
+
+    int[] pix = obtain(arrayPool, w * h);
+    bitmap.getPixels(pix, 0, w, 0, 0, w, h);
+
+    blur(pix, w, h, radius, arrayPool, w * h < FastBlur.PARALLEL_THRESHOLD ? null : executor);
+
+    bitmap.setPixels(pix, 0, w, 0, 0, w, h);
+    release(arrayPool, pix);
+
+    return bitmap;
+  }
+
+  /**
+   * Blurs the packed ARGB {@code pix} of a {@code w} x {@code h} image in place, alpha is passed
+   * through untouched.
+   */
+  public static void blur(final int[] pix, final int w, final int h, int radius,
+                          @Nullable final ArrayPool arrayPool, @Nullable Executor executor) {
+    final int[] boxes = boxRadii(radius);
+
+    if (executor == null) {
+      blurRows(pix, w, boxes, 0, h, arrayPool);
+      blurColumns(pix, w, h, boxes, 0, w, arrayPool);
+      return;
+    }
+    ParallelBands.run(executor, h, new ParallelBands.Task() {
+      @Override
+      public void run(int start, int end) {
+        blurRows(pix, w, boxes, start, end, arrayPool);
+      }
+    });
+    ParallelBands.run(executor, w, new ParallelBands.Task() {
+      @Override
+      public void run(int start, int end) {
+        blurColumns(pix, w, h, boxes, start, end, arrayPool);
+      }
+    });
+  }
+
+  private static void blurRows(int[] pix, int w, int[] boxes, int fromY, int toY,
+                               @Nullable ArrayPool arrayPool) {
+    int[] planes = obtain(arrayPool, w * 6);
+    for (int y = fromY; y < toY; y++) {
+      blurLine(pix, y * w, 1, w, boxes, planes);
+    }
+    release(arrayPool, planes);
+  }
+
+  private static void blurColumns(int[] pix, int w, int h, int[] boxes, int fromX, int toX,
+                                  @Nullable ArrayPool arrayPool) {
+    int[] planes = obtain(arrayPool, h * 6);
+    for (int x = fromX; x < toX; x++) {
+      blurLine(pix, x, w, h, boxes, planes);
+    }
+    release(arrayPool, planes);
+  }
+
+  /**
+   * Runs the three boxes over one row or column of {@code pix}. The channels are unpacked into
+   * planes and summed without dividing between passes, so there is a single division per
+   * channel at the end.
+   */
+  private static void blurLine(int[] pix, int offset, int stride, int n, int[] boxes,
+                               int[] planes) {
+    int divisor = 1;
+    for (int box : boxes) {
+      divisor *= box + box + 1;
+    }
+    int shift = FastBlur.divShift(divisor);
+    long mul = FastBlur.divMul(divisor, shift);
+
+    for (int x = 0, yi = offset; x < n; x++, yi += stride) {
+      int p = pix[yi];
+      planes[x] = (p >> 16) & 0xff;
+      planes[n + x] = (p >> 8) & 0xff;
+      planes[2 * n + x] = p & 0xff;
+    }
+    for (int c = 0; c < 3; c++) {
+      int a = c * n;
+      int b = (c + 3) * n;
+      boxPlane(planes, a, planes, b, n, boxes[0]);
+      boxPlane(planes, b, planes, a, n, boxes[1]);
+      boxPlane(planes, a, planes, b, n, boxes[2]);
+    }
+    for (int x = 0, yi = offset; x < n; x++, yi += stride) {
+      pix[yi] = (0xff000000 & pix[yi])
+          | ((int) ((planes[3 * n + x] * mul) >>> shift) << 16)
+          | ((int) ((planes[4 * n + x] * mul) >>> shift) << 8)
+          | (int) ((planes[5 * n + x] * mul) >>> shift);
+    }
+  }
+
+  /**
+   * Writes the running sums of a box of radius {@code r} over {@code n} values starting at
+   * {@code src[from]} to {@code dst[to]}. Values past either end repeat the edge value.
+   */
+  private static void boxPlane(int[] src, int from, int[] dst, int to, int n, int r) {
+    int last = from + n - 1;
+    int sum = src[from] * (r + 1);
+    for (int i = 1; i <= r; i++) {
+      sum += src[Math.min(from + i, last)];
+    }
+
+    int x = 0;
+    int head = Math.min(n, r);
+    int tail = Math.max(head, n - 1 - r);
+    for (; x < head; x++) {
+      dst[to + x] = sum;
+      sum += src[Math.min(from + x + r + 1, last)] - src[from];
+    }
+    for (; x < tail; x++) {
+      dst[to + x] = sum;
+      sum += src[from + x + r + 1] - src[from + x - r];
+    }
+    for (; x < n; x++) {
+      dst[to + x] = sum;
+      sum += src[last] - src[from + Math.max(x - r, 0)];
+    }
+  }
+
+  /**
+   * Radii of the three boxes whose combined variance is closest to the StackBlur kernel of
+   * {@code radius}, a triangle with variance radius * (radius + 2) / 6. The array is shared, it
+   * must not be written to.
+   */
+  static int[] boxRadii(int radius) {
+    return BOX_RADII[Math.max(0, Math.min(radius, MAX_RADIUS))];
+  }
+
+  private static int[] computeBoxRadii(int radius) {
+    double variance = radius * (radius + 2) / 6.0;
+    int lower = (int) Math.floor(Math.sqrt(12 * variance / PASSES + 1));
+    if (lower % 2 == 0) {
+      lower--;
+    }
+    int upper = lower + 2;
+    int lowerCount = (int) Math.round(
+        (12 * variance - PASSES * lower * lower - 4 * PASSES * lower - 3 * PASSES)
+            / (-4 * lower - 4));
+
+    int[] radii = new int[PASSES];
+    for (int i = 0; i < PASSES; i++) {
+      radii[i] = ((i < lowerCount ? lower : upper) - 1) / 2;
+    }
+    return radii;
+  }
+
+  private static int[] obtain(@Nullable ArrayPool arrayPool, int size) {
+    return arrayPool == null ? new int[size] : arrayPool.get(size, int[].class);
+  }
+
+  private static void release(@Nullable ArrayPool arrayPool, int[] array) {
+    if (arrayPool != null) {
+      arrayPool.put(array);
+    }
+  }
+}
@@ -0,0 +1,304 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The distance to the mask's outside of every pixel of a mask that a border can reach, for
+ * drawing borders that follow the mask's shape.
+ *
+ * Pixels are inside where the mask's alpha is at least half, everything beyond the bitmap is
+ * outside. The exact Euclidean distance is computed with the separable lower-envelope transform
+ * of Felzenszwalb and Huttenlocher, linear in the number of pixels. Borders are then bands of
+ * distance from the edge, with an even width on convex and concave parts alike.
+ *
+ * Only distances up to the border's reach matter, so the row pass keeps them in a byte per pixel
+ * and only the pixels within reach are stored: a field costs 9 bytes per pixel along the edge,
+ * and 2 bytes per pixel of the mask, borrowed, while it is computed.
+ */
+public final class DistanceField {
+
+  /**
+   * Bands further inside than this many pixels are not drawn, row distances must fit in a byte.
+   */
+  public static final int MAX_REACH = 254;
+
+  private static final float INF = 1e20f;
+
+  private final int width;
+  private final int height;
+  private final int reach;
+  private final int count;
+  /**
+   * The pixels within reach of the outside, column by column.
+   */
+  private final int[] index;
+  /**
+   * Distance from each of them to the nearest outside pixel's center, 0 outside.
+   */
+  private final float[] distance;
+  /**
+   * The mask's alpha at each of them.
+   */
+  private final byte[] coverage;
+
+  private DistanceField(int width, int height, int reach, int count, int[] index,
+                        float[] distance, byte[] coverage) {
+    this.width = width;
+    this.height = height;
+    this.reach = reach;
+    this.count = count;
+    this.index = index;
+    this.distance = distance;
+    this.coverage = coverage;
+  }
+
+  /**
+   * The distance field of an ALPHA_8 (or any other) {@code mask}, for bands up to {@code reach}
+   * pixels wide in total.
+   *
+   * @param arrayPool where to borrow the two bytes per pixel the computation needs, {@code null}
+   *                  allocates.
+   */
+  @NonNull
+  public static DistanceField compute(@NonNull Bitmap mask, int reach,
+                                      @Nullable ArrayPool arrayPool) {
+    Bitmap alphaMask = mask.getConfig() == Bitmap.Config.ALPHA_8 ? mask : mask.extractAlpha();
+    int stride = alphaMask.getRowBytes();
+    int size = stride * alphaMask.getHeight();
+    byte[] alpha = obtain(arrayPool, size);
+    alphaMask.copyPixelsToBuffer(ByteBuffer.wrap(alpha, 0, size));
+    if (alphaMask != mask) {
+      alphaMask.recycle();
+    }
+
+    DistanceField field =
+        compute(alpha, stride, mask.getWidth(), mask.getHeight(), reach, arrayPool);
+    release(arrayPool, alpha);
+    return field;
+  }
+
+  /**
+   * The distance field of the {@code w} x {@code h} alpha plane {@code alpha}, rows
+   * {@code stride} bytes apart.
+   */
+  @NonNull
+  static DistanceField compute(@NonNull byte[] alpha, int stride, int w, int h, int reach,
+                               @Nullable ArrayPool arrayPool) {
+    reach = Math.max(0, Math.min(reach, MAX_REACH));
+    // Row distances are capped here: the distances below it come out exact, and anything at or
+    // above it is beyond reach either way.
+    int limit = reach + 1;
+
+    byte[] rows = obtain(arrayPool, w * h);
+    for (int y = 0; y < h; y++) {
+      int row = y * w;
+      int a = y * stride;
+      for (int x = 0, outside = -1; x < w; x++) {
+        if ((alpha[a + x] & 0xff) < 128) {
+          outside = x;
+        }
+        rows[row + x] = (byte) Math.min(limit, x - outside);
+      }
+      for (int x = w - 1, outside = w; x >= 0; x--) {
+        if ((alpha[a + x] & 0xff) < 128) {
+          outside = x;
+        }
+        if (outside - x < (rows[row + x] & 0xff)) {
+          rows[row + x] = (byte) (outside - x);
+        }
+      }
+    }
+
+    // One outside sample beyond both ends of every column.
+    int n = h + 2;
+    float[] f = new float[n];
+    float[] d = new float[n];
+    int[] v = new int[n];
+    float[] z = new float[n + 1];
+
+    int capacity = (int) Math.min((long) w * h, 2L * (w + h) * (reach + 1));
+    int[] index = new int[capacity];
+    float[] distance = new float[capacity];
+    byte[] coverage = new byte[capacity];
+    int count = 0;
+    for (int x = 0; x < w; x++) {
+      f[0] = 0;
+      for (int y = 0; y < h; y++) {
+        int rowDistance = rows[y * w + x] & 0xff;
+        f[y + 1] = rowDistance * rowDistance;
+      }
+      f[h + 1] = 0;
+      transform1d(f, n, d, v, z);
+
+      for (int y = 0; y < h; y++) {
+        byte m = alpha[y * stride + x];
+        float dist = (float) Math.sqrt(d[y + 1]);
+        if (m == 0 || dist - 1 >= reach) {
+          continue;
+        }
+        if (count == index.length) {
+          int grown = (int) Math.min((long) w * h, count + (count >> 1) + 16);
+          index = Arrays.copyOf(index, grown);
+          distance = Arrays.copyOf(distance, grown);
+          coverage = Arrays.copyOf(coverage, grown);
+        }
+        index[count] = y * w + x;
+        distance[count] = dist;
+        coverage[count] = m;
+        count++;
+      }
+    }
+    release(arrayPool, rows);
+
+    return new DistanceField(w, h, reach, count, Arrays.copyOf(index, count),
+        Arrays.copyOf(distance, count), Arrays.copyOf(coverage, count));
+  }
+
+  /**
+   * The lower envelope of the parabolas rooted at each (q, f[q]), sampled at 0..n-1 into d.
+   */
+  private static void transform1d(float[] f, int n, float[] d, int[] v, float[] z) {
+    int k = 0;
+    v[0] = 0;
+    z[0] = -INF;
+    z[1] = INF;
+    for (int q = 1; q < n; q++) {
+      float s = intersection(f, q, v[k]);
+      while (s <= z[k]) {
+        k--;
+        s = intersection(f, q, v[k]);
+      }
+      k++;
+      v[k] = q;
+      z[k] = s;
+      z[k + 1] = INF;
+    }
+    k = 0;
+    for (int q = 0; q < n; q++) {
+      while (z[k + 1] < q) {
+        k++;
+      }
+      float dq = q - v[k];
+      d[q] = dq * dq + f[v[k]];
+    }
+  }
+
+  private static float intersection(float[] f, int q, int p) {
+    return ((f[q] + q * q) - (f[p] + p * p)) / (2 * q - 2 * p);
+  }
+
+  /**
+   * Paints bands of {@code widths[i]} pixels in {@code colors[i]} along the inside of the mask's
+   * edge, the first band outermost, over {@code pix}: the unpremultiplied ARGB of an image
+   * already masked by the same mask. Band edges are anti-aliased, pixels further inside are left
+   * alone, and so is anything beyond the reach the field was computed for.
+   */
+  public void drawBands(@NonNull int[] pix, @NonNull int[] widths, @NonNull int[] colors) {
+    float total = 0;
+    for (int bandWidth : widths) {
+      total += bandWidth;
+    }
+
+    for (int j = 0; j < count; j++) {
+      int i = index[j];
+      int m = coverage[j] & 0xff;
+      // How far the pixel's outer side is from the edge, edge pixels outside count as 0.
+      float e = Math.max(0, distance[j] - 1);
+      if (e >= total) {
+        continue;
+      }
+      float a = 0;
+      float r = 0;
+      float g = 0;
+      float b = 0;
+      float covered = 0;
+      float lo = 0;
+      for (int k = 0; k < widths.length; k++) {
+        float hi = lo + widths[k];
+        float cover = clamp(hi - e) - clamp(lo - e);
+        lo = hi;
+        if (cover <= 0) {
+          continue;
+        }
+        int color = colors[k];
+        float ca = cover * (color >>> 24) * m / 255f;
+        a += ca;
+        r += ca * ((color >> 16) & 0xff);
+        g += ca * ((color >> 8) & 0xff);
+        b += ca * (color & 0xff);
+        covered += cover;
+      }
+
+      // The image already carries the mask's alpha, it shows through what the bands leave.
+      int p = pix[i];
+      float ia = Math.max(0, 1 - covered) * (p >>> 24);
+      a += ia;
+      r += ia * ((p >> 16) & 0xff);
+      g += ia * ((p >> 8) & 0xff);
+      b += ia * (p & 0xff);
+
+      if (a <= 0) {
+        pix[i] = 0;
+      } else {
+        pix[i] = (Math.min(255, Math.round(a)) << 24)
+            | (Math.min(255, Math.round(r / a)) << 16)
+            | (Math.min(255, Math.round(g / a)) << 8)
+            | Math.min(255, Math.round(b / a));
+      }
+    }
+  }
+
+  private static float clamp(float value) {
+    return Math.min(1, Math.max(0, value));
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getReach() {
+    return reach;
+  }
+
+  public int getByteCount() {
+    return count * 9;
+  }
+
+  private static byte[] obtain(@Nullable ArrayPool arrayPool, int size) {
+    return arrayPool == null ? new byte[size] : arrayPool.get(size, byte[].class);
+  }
+
+  private static void release(@Nullable ArrayPool arrayPool, byte[] array) {
+    if (arrayPool != null) {
+      arrayPool.put(array);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A {@link Canvas}, {@link RectF} and {@link Matrix} per thread, so transformations draw without
+ * allocating any of them per call.
+ *
+ * The canvas is bound to one bitmap at a time: bind it, draw, and release it before calling
+ * anything that may draw with it too. Its matrix and clip must be left as they were found, use
+ * save and restore or pass a matrix to the draw. The rect and matrix are overwritten by the next
+ * call on the same thread, pass them straight to a draw.
+ */
+public final class Drawing {
+
+  private static final ThreadLocal<Drawing> local = new ThreadLocal<Drawing>() {
+    @Override
+    protected Drawing initialValue() {
+      return new Drawing();
+    }
+  };
+
+  private final Canvas canvas = new Canvas();
+  private final RectF rect = new RectF();
+  private final Matrix matrix = new Matrix();
+
+  private Drawing() {
+    // One per thread.
+  }
+
+  /**
+   * This thread's canvas, drawing into {@code bitmap} until {@link #releaseCanvas}.
+   */
+  @NonNull
+  public static Canvas obtainCanvas(@NonNull Bitmap bitmap) {
+    Canvas canvas = local.get().canvas;
+    canvas.setBitmap(bitmap);
+    return canvas;
+  }
+
+  /**
+   * Unbinds the canvas, so it does not keep a pooled bitmap alive.
+   */
+  public static void releaseCanvas(@NonNull Canvas canvas) {
+    canvas.setBitmap(null);
+  }
+
+  @NonNull
+  public static RectF rect() {
+    return local.get().rect;
+  }
+
+  @NonNull
+  public static RectF rect(float left, float top, float right, float bottom) {
+    RectF rect = local.get().rect;
+    rect.set(left, top, right, bottom);
+    return rect;
+  }
+
+  /**
+   * This thread's matrix, reset to identity.
+   */
+  @NonNull
+  public static Matrix matrix() {
+    Matrix matrix = local.get().matrix;
+    matrix.reset();
+    return matrix;
+  }
+}
@@ -2,6 +2,12 @@ package jp.wasabeef.glide.transformations.internal;
 
 import android.graphics.Bitmap;
 
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.Nullable;
+
 /**
  * Copyright (C) 2018 Wasabeef
  *
@@ -20,7 +26,36 @@ import android.graphics.Bitmap;
 
 public class FastBlur {
 
+  /**
+   * Bitmaps with fewer pixels than this are always blurred on the calling thread, the
+   * hand-off to the executor costs more than it saves.
+   */
+  public static final int PARALLEL_THRESHOLD = 256 * 256;
+
   public static Bitmap blur(Bitmap sentBitmap, int radius, boolean canReuseInBitmap) {
+    return blur(sentBitmap, radius, canReuseInBitmap, null, null);
+  }
+
+  public static Bitmap blur(Bitmap sentBitmap, int radius, boolean canReuseInBitmap,
+                            @Nullable Executor executor) {
+    return blur(sentBitmap, radius, canReuseInBitmap, null, executor);
+  }
+
+  /**
+   * Same as {@link #blur(Bitmap, int, boolean)}, but borrows every scratch array from
+   * {@code arrayPool} and splits the row pass into horizontal bands and the column pass into
+   * vertical bands that run on {@code executor}. The output is identical to the serial kernel.
+   *
+   * @param arrayPool where to borrow scratch arrays from, usually
+   *                  {@code Glide.get(context).getArrayPool()}. Glide only keeps arrays up to
+   *                  half of its pool size, so blurring large bitmaps without allocating needs a
+   *                  bigger pool, see {@code GlideBuilder#setArrayPool}. {@code null} allocates.
+   * @param executor where to run the bands, see {@link ParallelBands#defaultExecutor()}.
+   *                 {@code null}, or a bitmap smaller than {@link #PARALLEL_THRESHOLD} pixels,
+   *                 keeps the blur on the calling thread.
+   */
+  public static Bitmap blur(Bitmap sentBitmap, int radius, boolean canReuseInBitmap,
+                            @Nullable ArrayPool arrayPool, @Nullable Executor executor) {
 
     // Stack Blur v1.0 from
     // http://www.quasimondo.com/StackBlurForCanvas/StackBlurDemo.html
@@ -64,194 +99,197 @@ public class FastBlur {
     int w = bitmap.getWidth();
     int h = bitmap.getHeight();
 
-    int[] pix = new int[w * h];
+    int[] pix = obtain(arrayPool, w * h);
     bitmap.getPixels(pix, 0, w, 0, 0, w, h);
 
-    int wm = w - 1;
-    int hm = h - 1;
-    int wh = w * h;
-    int div = radius + radius + 1;
-
-    int r[] = new int[wh];
-    int g[] = new int[wh];
-    int b[] = new int[wh];
-    int rsum, gsum, bsum, x, y, i, p, yp, yi, yw;
-    int vmin[] = new int[Math.max(w, h)];
-
-    int divsum = (div + 1) >> 1;
-    divsum *= divsum;
-    int dv[] = new int[256 * divsum];
-    for (i = 0; i < 256 * divsum; i++) {
-      dv[i] = (i / divsum);
-    }
+    blur(pix, w, h, radius, arrayPool, w * h < PARALLEL_THRESHOLD ? null : executor);
 
-    yw = yi = 0;
+    bitmap.setPixels(pix, 0, w, 0, 0, w, h);
+    release(arrayPool, pix);
 
-    int[][] stack = new int[div][3];
-    int stackpointer;
-    int stackstart;
-    int[] sir;
-    int rbs;
-    int r1 = radius + 1;
-    int routsum, goutsum, boutsum;
-    int rinsum, ginsum, binsum;
+    return (bitmap);
+  }
 
-    for (y = 0; y < h; y++) {
-      rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-      for (i = -radius; i <= radius; i++) {
-        p = pix[yi + Math.min(wm, Math.max(i, 0))];
-        sir = stack[i + radius];
-        sir[0] = (p & 0xff0000) >> 16;
-        sir[1] = (p & 0x00ff00) >> 8;
-        sir[2] = (p & 0x0000ff);
-        rbs = r1 - Math.abs(i);
-        rsum += sir[0] * rbs;
-        gsum += sir[1] * rbs;
-        bsum += sir[2] * rbs;
-        if (i > 0) {
-          rinsum += sir[0];
-          ginsum += sir[1];
-          binsum += sir[2];
-        } else {
-          routsum += sir[0];
-          goutsum += sir[1];
-          boutsum += sir[2];
-        }
+  /**
+   * Blurs the packed ARGB {@code pix} of a {@code w} x {@code h} image in place. {@code pix} may
+   * be longer than {@code w * h}, as arrays from an {@link ArrayPool} often are.
+   *
+   * Each row, then each column, is copied into a line buffer and blurred back into {@code pix},
+   * so the only scratch memory is one line and one stack per band. On the calling thread, with a
+   * {@code null} executor and an {@code arrayPool}, nothing is allocated. With an executor each
+   * pass allocates its task and {@link ParallelBands#run}'s bookkeeping: a latch, a counter, an
+   * error holder and a runnable.
+   */
+  public static void blur(final int[] pix, final int w, final int h, final int radius,
+                          @Nullable final ArrayPool arrayPool, @Nullable Executor executor) {
+    int divsum = (radius + 1) * (radius + 1);
+    final int shift = divShift(divsum);
+    final long mul = divMul(divsum, shift);
+
+    if (executor == null) {
+      blurRows(pix, w, radius, mul, shift, 0, h, arrayPool);
+      blurColumns(pix, w, h, radius, mul, shift, 0, w, arrayPool);
+      return;
+    }
+    ParallelBands.run(executor, h, new ParallelBands.Task() {
+      @Override
+      public void run(int start, int end) {
+        blurRows(pix, w, radius, mul, shift, start, end, arrayPool);
       }
-      stackpointer = radius;
-
-      for (x = 0; x < w; x++) {
-
-        r[yi] = dv[rsum];
-        g[yi] = dv[gsum];
-        b[yi] = dv[bsum];
-
-        rsum -= routsum;
-        gsum -= goutsum;
-        bsum -= boutsum;
+    });
+    ParallelBands.run(executor, w, new ParallelBands.Task() {
+      @Override
+      public void run(int start, int end) {
+        blurColumns(pix, w, h, radius, mul, shift, start, end, arrayPool);
+      }
+    });
+  }
 
-        stackstart = stackpointer - radius + div;
-        sir = stack[stackstart % div];
+  /**
+   * Every weighted sum is below 256 * divisor, so dividing it by the divisor is exact as a
+   * multiply by ceil(2^shift / divisor) and a shift, with no per-call lookup table.
+   */
+  static int divShift(int divisor) {
+    return (32 - Integer.numberOfLeadingZeros(256 * divisor))
+        + (32 - Integer.numberOfLeadingZeros(divisor - 1));
+  }
 
-        routsum -= sir[0];
-        goutsum -= sir[1];
-        boutsum -= sir[2];
+  static long divMul(int divisor, int shift) {
+    return ((1L << shift) + divisor - 1) / divisor;
+  }
 
-        if (y == 0) {
-          vmin[x] = Math.min(x + radius + 1, wm);
-        }
-        p = pix[yw + vmin[x]];
+  private static void blurRows(int[] pix, int w, int radius, long mul, int shift,
+                               int fromY, int toY, @Nullable ArrayPool arrayPool) {
+    int[] line = obtain(arrayPool, w);
+    int[] stack = obtain(arrayPool, (radius + radius + 1) * 3);
 
-        sir[0] = (p & 0xff0000) >> 16;
-        sir[1] = (p & 0x00ff00) >> 8;
-        sir[2] = (p & 0x0000ff);
+    for (int y = fromY; y < toY; y++) {
+      System.arraycopy(pix, y * w, line, 0, w);
+      blurLine(line, w, pix, y * w, 1, radius, mul, shift, stack);
+    }
 
-        rinsum += sir[0];
-        ginsum += sir[1];
-        binsum += sir[2];
+    release(arrayPool, line);
+    release(arrayPool, stack);
+  }
 
-        rsum += rinsum;
-        gsum += ginsum;
-        bsum += binsum;
+  /**
+   * Gathers each column into a line buffer, so only the gather reads with a stride of {@code w}.
+   * Transposing the image in 32x32 tiles and blurring rows instead was measured and not kept:
+   * at radius 25, serial, it took 9.8 ms against 8.5 ms at 512x512, 60.8 against 52.7 ms at
+   * 1080x1920 and 325 against 316 ms at 4096x2304, and needs a second w * h buffer.
+   */
+  private static void blurColumns(int[] pix, int w, int h, int radius, long mul, int shift,
+                                  int fromX, int toX, @Nullable ArrayPool arrayPool) {
+    int[] line = obtain(arrayPool, h);
+    int[] stack = obtain(arrayPool, (radius + radius + 1) * 3);
+
+    for (int x = fromX; x < toX; x++) {
+      for (int y = 0, yi = x; y < h; y++, yi += w) {
+        line[y] = pix[yi];
+      }
+      blurLine(line, h, pix, x, w, radius, mul, shift, stack);
+    }
 
-        stackpointer = (stackpointer + 1) % div;
-        sir = stack[(stackpointer) % div];
+    release(arrayPool, line);
+    release(arrayPool, stack);
+  }
 
-        routsum += sir[0];
-        goutsum += sir[1];
-        boutsum += sir[2];
+  /**
+   * Blurs the {@code n} packed pixels of {@code line} into {@code out}, starting at
+   * {@code offset} and stepping by {@code stride}. Alpha is passed through untouched.
+   */
+  private static void blurLine(int[] line, int n, int[] out, int offset, int stride,
+                               int radius, long mul, int shift, int[] stack) {
+    int nm = n - 1;
+    int div = radius + radius + 1;
+    int r1 = radius + 1;
 
-        rinsum -= sir[0];
-        ginsum -= sir[1];
-        binsum -= sir[2];
+    int rsum, gsum, bsum, x, i, p, yi;
+    int stackpointer;
+    int stackstart;
+    int sir;
+    int rbs;
+    int routsum, goutsum, boutsum;
+    int rinsum, ginsum, binsum;
 
-        yi++;
+    rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
+    for (i = -radius; i <= radius; i++) {
+      p = line[Math.min(nm, Math.max(i, 0))];
+      sir = (i + radius) * 3;
+      stack[sir] = (p & 0xff0000) >> 16;
+      stack[sir + 1] = (p & 0x00ff00) >> 8;
+      stack[sir + 2] = (p & 0x0000ff);
+      rbs = r1 - Math.abs(i);
+      rsum += stack[sir] * rbs;
+      gsum += stack[sir + 1] * rbs;
+      bsum += stack[sir + 2] * rbs;
+      if (i > 0) {
+        rinsum += stack[sir];
+        ginsum += stack[sir + 1];
+        binsum += stack[sir + 2];
+      } else {
+        routsum += stack[sir];
+        goutsum += stack[sir + 1];
+        boutsum += stack[sir + 2];
       }
-      yw += w;
     }
-    for (x = 0; x < w; x++) {
-      rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-      yp = -radius * w;
-      for (i = -radius; i <= radius; i++) {
-        yi = Math.max(0, yp) + x;
-
-        sir = stack[i + radius];
-
-        sir[0] = r[yi];
-        sir[1] = g[yi];
-        sir[2] = b[yi];
-
-        rbs = r1 - Math.abs(i);
-
-        rsum += r[yi] * rbs;
-        gsum += g[yi] * rbs;
-        bsum += b[yi] * rbs;
-
-        if (i > 0) {
-          rinsum += sir[0];
-          ginsum += sir[1];
-          binsum += sir[2];
-        } else {
-          routsum += sir[0];
-          goutsum += sir[1];
-          boutsum += sir[2];
-        }
-
-        if (i < hm) {
-          yp += w;
-        }
-      }
-      yi = x;
-      stackpointer = radius;
-      for (y = 0; y < h; y++) {
-        // Preserve alpha channel: ( 0xff000000 & pix[yi] )
-        pix[yi] = (0xff000000 & pix[yi]) | (dv[rsum] << 16) | (dv[gsum] << 8) | dv[bsum];
+    stackpointer = radius;
+    yi = offset;
 
-        rsum -= routsum;
-        gsum -= goutsum;
-        bsum -= boutsum;
+    for (x = 0; x < n; x++) {
+      // Preserve alpha channel: ( 0xff000000 & line[x] )
+      out[yi] = (0xff000000 & line[x])
+          | ((int) ((rsum * mul) >>> shift) << 16)
+          | ((int) ((gsum * mul) >>> shift) << 8)
+          | (int) ((bsum * mul) >>> shift);
 
-        stackstart = stackpointer - radius + div;
-        sir = stack[stackstart % div];
+      rsum -= routsum;
+      gsum -= goutsum;
+      bsum -= boutsum;
 
-        routsum -= sir[0];
-        goutsum -= sir[1];
-        boutsum -= sir[2];
+      stackstart = stackpointer - radius + div;
+      sir = (stackstart % div) * 3;
 
-        if (x == 0) {
-          vmin[y] = Math.min(y + r1, hm) * w;
-        }
-        p = x + vmin[y];
+      routsum -= stack[sir];
+      goutsum -= stack[sir + 1];
+      boutsum -= stack[sir + 2];
 
-        sir[0] = r[p];
-        sir[1] = g[p];
-        sir[2] = b[p];
+      p = line[Math.min(x + r1, nm)];
 
-        rinsum += sir[0];
-        ginsum += sir[1];
-        binsum += sir[2];
+      stack[sir] = (p & 0xff0000) >> 16;
+      stack[sir + 1] = (p & 0x00ff00) >> 8;
+      stack[sir + 2] = (p & 0x0000ff);
 
-        rsum += rinsum;
-        gsum += ginsum;
-        bsum += binsum;
+      rinsum += stack[sir];
+      ginsum += stack[sir + 1];
+      binsum += stack[sir + 2];
 
-        stackpointer = (stackpointer + 1) % div;
-        sir = stack[stackpointer];
+      rsum += rinsum;
+      gsum += ginsum;
+      bsum += binsum;
 
-        routsum += sir[0];
-        goutsum += sir[1];
-        boutsum += sir[2];
+      stackpointer = (stackpointer + 1) % div;
+      sir = stackpointer * 3;
 
-        rinsum -= sir[0];
-        ginsum -= sir[1];
-        binsum -= sir[2];
+      routsum += stack[sir];
+      goutsum += stack[sir + 1];
+      boutsum += stack[sir + 2];
 
-        yi += w;
-      }
+      rinsum -= stack[sir];
+      ginsum -= stack[sir + 1];
+      binsum -= stack[sir + 2];
+
+      yi += stride;
     }
+  }
 
-    bitmap.setPixels(pix, 0, w, 0, 0, w, h);
+  private static int[] obtain(@Nullable ArrayPool arrayPool, int size) {
+    return arrayPool == null ? new int[size] : arrayPool.get(size, int[].class);
+  }
 
-    return (bitmap);
+  private static void release(@Nullable ArrayPool arrayPool, int[] array) {
+    if (arrayPool != null) {
+      arrayPool.put(array);
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,239 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/**
+ * Kuwahara filter in constant time per pixel.
+ *
+ * Each output pixel is the mean of whichever of its four (radius + 1)^2 quadrants has the least
+ * variance, as in GPUImage's shader. Instead of summing every quadrant the filter keeps running
+ * column sums (and sums of squares) over the radius + 1 rows above and below the current row,
+ * and slides a radius + 1 wide window along them, so the radius does not change the cost.
+ * Pixels outside the image repeat the edge, like a clamped texture.
+ */
+public final class Kuwahara {
+
+  /**
+   * Larger radii are clamped, beyond this the window sums of squares overflow an int.
+   */
+  public static final int MAX_RADIUS = 180;
+
+  private static final int CHANNELS = 6;
+
+  private static final ThreadLocal<long[]> VARIANCES = new ThreadLocal<>();
+
+  private Kuwahara() {
+    // Utility class.
+  }
+
+  /**
+   * Filters {@code source} into {@code dest}, which must have the same size. The result is
+   * opaque.
+   */
+  public static void filter(Bitmap source, Bitmap dest, int radius, @Nullable ArrayPool arrayPool,
+                            @Nullable Executor executor) {
+    int w = source.getWidth();
+    int h = source.getHeight();
+
+    int[] src = obtain(arrayPool, w * h);
+    int[] dst = obtain(arrayPool, w * h);
+    source.getPixels(src, 0, w, 0, 0, w, h);
+
+    filter(src, dst, w, h, radius, arrayPool,
+        w * h < FastBlur.PARALLEL_THRESHOLD ? null : executor);
+
+    dest.setPixels(dst, 0, w, 0, 0, w, h);
+    release(arrayPool, src);
+    release(arrayPool, dst);
+  }
+
+  public static void filter(final int[] src, final int[] dst, final int w, final int h,
+                            int radius, @Nullable final ArrayPool arrayPool,
+                            @Nullable Executor executor) {
+    final int r = Math.max(0, Math.min(radius, MAX_RADIUS));
+    final int n = (r + 1) * (r + 1);
+    // Rounded mean, (sum + n / 2) / n, without a division.
+    final int shift = FastBlur.divShift(n);
+    final long mul = FastBlur.divMul(n, shift);
+
+    if (executor == null) {
+      filterRows(src, dst, w, h, r, n, mul, shift, 0, h, arrayPool);
+      return;
+    }
+    ParallelBands.run(executor, h, new ParallelBands.Task() {
+      @Override
+      public void run(int start, int end) {
+        filterRows(src, dst, w, h, r, n, mul, shift, start, end, arrayPool);
+      }
+    });
+  }
+
+  private static void filterRows(int[] src, int[] dst, int w, int h, int r, int n, long mul,
+                                 int shift, int start, int end, @Nullable ArrayPool arrayPool) {
+    int span = w + r;
+    int[] above = obtain(arrayPool, CHANNELS * w);
+    int[] below = obtain(arrayPool, CHANNELS * w);
+    int[] aboveWindows = obtain(arrayPool, CHANNELS * span);
+    int[] belowWindows = obtain(arrayPool, CHANNELS * span);
+    long[] variances = obtainVariances(2 * span);
+
+    clear(above, CHANNELS * w);
+    clear(below, CHANNELS * w);
+    for (int k = -r; k <= 0; k++) {
+      addRow(above, src, clamp(start + k, h) * w, w, 1);
+      addRow(below, src, clamp(start - k, h) * w, w, 1);
+    }
+
+    for (int y = start; y < end; y++) {
+      if (y > start) {
+        addRow(above, src, y * w, w, 1);
+        addRow(above, src, clamp(y - r - 1, h) * w, w, -1);
+        addRow(below, src, clamp(y + r, h) * w, w, 1);
+        addRow(below, src, (y - 1) * w, w, -1);
+      }
+      slide(above, aboveWindows, variances, 0, w, r, n);
+      slide(below, belowWindows, variances, span, w, r, n);
+
+      for (int x = 0, i = y * w; x < w; x++, i++) {
+        // Window j covers columns j - r .. j, so x is the left quadrant, x + r the right.
+        int best = x;
+        int[] windows = aboveWindows;
+        long bestVariance = variances[x];
+        long v = variances[x + r];
+        if (v < bestVariance) {
+          bestVariance = v;
+          best = x + r;
+        }
+        v = variances[span + x + r];
+        if (v < bestVariance) {
+          bestVariance = v;
+          best = x + r;
+          windows = belowWindows;
+        }
+        v = variances[span + x];
+        if (v < bestVariance) {
+          best = x;
+          windows = belowWindows;
+        }
+
+        int half = n >> 1;
+        dst[i] = 0xff000000
+            | (int) (((windows[best] + half) * mul) >>> shift) << 16
+            | (int) (((windows[span + best] + half) * mul) >>> shift) << 8
+            | (int) (((windows[2 * span + best] + half) * mul) >>> shift);
+      }
+    }
+
+    release(arrayPool, above);
+    release(arrayPool, below);
+    release(arrayPool, aboveWindows);
+    release(arrayPool, belowWindows);
+  }
+
+  /**
+   * Adds (or with {@code sign} -1 subtracts) one row of {@code src} to the column sums.
+   */
+  private static void addRow(int[] columns, int[] src, int offset, int w, int sign) {
+    for (int x = 0; x < w; x++) {
+      int p = src[offset + x];
+      int red = (p >> 16) & 0xff;
+      int green = (p >> 8) & 0xff;
+      int blue = p & 0xff;
+      columns[x] += sign * red;
+      columns[w + x] += sign * green;
+      columns[2 * w + x] += sign * blue;
+      columns[3 * w + x] += sign * red * red;
+      columns[4 * w + x] += sign * green * green;
+      columns[5 * w + x] += sign * blue * blue;
+    }
+  }
+
+  /**
+   * Writes to {@code windows[c * (w + r) + j]} the sum of columns j - r .. j of channel c, for
+   * j in 0 .. w + r - 1, repeating the edge columns past either end, and to
+   * {@code variances[offset + j]} n^2 times the summed variance of the three color channels of
+   * window j. Every window serves two pixels, so this is computed once per window rather than
+   * per pixel.
+   */
+  private static void slide(int[] columns, int[] windows, long[] variances, int offset, int w,
+                            int r, int n) {
+    int span = w + r;
+    for (int c = 0; c < CHANNELS; c++) {
+      int from = c * w;
+      int to = c * span;
+      int last = from + w - 1;
+      int sum = columns[from] * (r + 1);
+      windows[to] = sum;
+      for (int j = 1; j < span; j++) {
+        sum += columns[Math.min(from + j, last)] - columns[from + Math.max(j - r - 1, 0)];
+        windows[to + j] = sum;
+      }
+    }
+
+    for (int j = 0; j < span; j++) {
+      long sums = 0;
+      long squares = 0;
+      for (int c = 0; c < 3; c++) {
+        long sum = windows[c * span + j];
+        sums += sum * sum;
+        squares += windows[(c + 3) * span + j];
+      }
+      variances[offset + j] = squares * n - sums;
+    }
+  }
+
+  private static int clamp(int y, int h) {
+    return y < 0 ? 0 : y >= h ? h - 1 : y;
+  }
+
+  private static void clear(int[] array, int length) {
+    for (int i = 0; i < length; i++) {
+      array[i] = 0;
+    }
+  }
+
+  /**
+   * Glide's {@link ArrayPool} only holds int and byte arrays, so each thread keeps its own.
+   */
+  private static long[] obtainVariances(int size) {
+    long[] variances = VARIANCES.get();
+    if (variances == null || variances.length < size) {
+      variances = new long[size];
+      VARIANCES.set(variances);
+    }
+    return variances;
+  }
+
+  private static int[] obtain(@Nullable ArrayPool arrayPool, int size) {
+    return arrayPool == null ? new int[size] : arrayPool.get(size, int[].class);
+  }
+
+  private static void release(@Nullable ArrayPool arrayPool, int[] array) {
+    if (arrayPool != null) {
+      arrayPool.put(array);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+
+import com.bumptech.glide.Glide;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Mask drawables rasterized once per size into ALPHA_8 bitmaps, and their distance fields.
+ *
+ * Inflating a nine-patch or vector mask and drawing it costs more than masking with it, and a
+ * list of chat bubbles uses the same mask at the same size over and over. The masks are kept in
+ * an LRU bounded by bytes, and dropped when the app trims its memory or its configuration
+ * changes, which may change what the drawables look like.
+ *
+ * Returned bitmaps are shared: draw them, never modify or recycle them.
+ */
+public final class MaskCache {
+
+  private static final int MAX_CACHED_BYTES = 4 * 1024 * 1024;
+  private static final int MAX_CACHED_FIELD_BYTES = 8 * 1024 * 1024;
+
+  private static final Map<Key, Bitmap> masks = new LinkedHashMap<>(16, 0.75f, true);
+  private static int cachedBytes;
+  private static final Map<Key, DistanceField> fields = new LinkedHashMap<>(16, 0.75f, true);
+  private static int cachedFieldBytes;
+  private static boolean registered;
+  /**
+   * Looking a mask up allocates nothing, a new key is only made for a new mask.
+   */
+  private static final ThreadLocal<Key> lookups = new ThreadLocal<Key>() {
+    @Override
+    protected Key initialValue() {
+      return new Key(0, 0, 0, 0);
+    }
+  };
+
+  private static final ComponentCallbacks2 callbacks = new ComponentCallbacks2() {
+    @Override
+    public void onTrimMemory(int level) {
+      trimMemory(level);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+      clear();
+    }
+
+    @Override
+    public void onLowMemory() {
+      clear();
+    }
+  };
+
+  private MaskCache() {
+    // Utility class.
+  }
+
+  /**
+   * The mask {@code maskId} drawn over a {@code width} x {@code height} ALPHA_8 bitmap.
+   */
+  @NonNull
+  public static Bitmap get(@NonNull Context context, int maskId, int width, int height) {
+    Key lookup = lookups.get().set(maskId, width, height, 0);
+    synchronized (masks) {
+      Bitmap mask = masks.get(lookup);
+      if (mask != null) {
+        return mask;
+      }
+      if (!registered) {
+        context.getApplicationContext().registerComponentCallbacks(callbacks);
+        registered = true;
+      }
+    }
+
+    Drawable drawable = Utils.getMaskDrawable(context.getApplicationContext(), maskId);
+    Bitmap mask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+    Canvas canvas = new Canvas(mask);
+    drawable.setBounds(0, 0, width, height);
+    drawable.draw(canvas);
+    canvas.setBitmap(null);
+
+    int bytes = width * height;
+    if (bytes <= MAX_CACHED_BYTES) {
+      synchronized (masks) {
+        Bitmap previous = masks.put(new Key(maskId, width, height, 0), mask);
+        if (previous != null) {
+          cachedBytes -= previous.getWidth() * previous.getHeight();
+        }
+        cachedBytes += bytes;
+        Iterator<Bitmap> it = masks.values().iterator();
+        while (cachedBytes > MAX_CACHED_BYTES) {
+          Bitmap eldest = it.next();
+          cachedBytes -= eldest.getWidth() * eldest.getHeight();
+          // Not recycled, another thread may still be drawing it.
+          it.remove();
+        }
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * The {@link DistanceField} of the mask {@code maskId} at {@code width} x {@code height}, for
+   * borders {@code reach} pixels wide in total.
+   */
+  @NonNull
+  public static DistanceField getDistanceField(@NonNull Context context, int maskId, int width,
+                                               int height, int reach) {
+    Key lookup = lookups.get().set(maskId, width, height, reach);
+    synchronized (masks) {
+      DistanceField field = fields.get(lookup);
+      if (field != null) {
+        return field;
+      }
+    }
+
+    DistanceField field = DistanceField.compute(get(context, maskId, width, height), reach,
+        Glide.get(context).getArrayPool());
+
+    int bytes = field.getByteCount();
+    if (bytes <= MAX_CACHED_FIELD_BYTES) {
+      synchronized (masks) {
+        DistanceField previous = fields.put(new Key(maskId, width, height, reach), field);
+        if (previous != null) {
+          cachedFieldBytes -= previous.getByteCount();
+        }
+        cachedFieldBytes += bytes;
+        Iterator<DistanceField> it = fields.values().iterator();
+        while (cachedFieldBytes > MAX_CACHED_FIELD_BYTES) {
+          cachedFieldBytes -= it.next().getByteCount();
+          it.remove();
+        }
+      }
+    }
+    return field;
+  }
+
+  /**
+   * Drops the masks once the app's UI is hidden or memory runs low.
+   */
+  public static void trimMemory(int level) {
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+      clear();
+    }
+  }
+
+  public static void clear() {
+    synchronized (masks) {
+      masks.clear();
+      cachedBytes = 0;
+      fields.clear();
+      cachedFieldBytes = 0;
+    }
+  }
+
+  private static final class Key {
+
+    private int maskId;
+    private int width;
+    private int height;
+    /**
+     * The reach of a distance field, 0 for a mask.
+     */
+    private int reach;
+
+    Key(int maskId, int width, int height, int reach) {
+      set(maskId, width, height, reach);
+    }
+
+    Key set(int maskId, int width, int height, int reach) {
+      this.maskId = maskId;
+      this.width = width;
+      this.height = height;
+      this.reach = reach;
+      return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return maskId == other.maskId && width == other.width && height == other.height
+          && reach == other.reach;
+    }
+
+    @Override
+    public int hashCode() {
+      return ((maskId * 31 + width) * 31 + height) * 31 + reach;
+    }
+  }
+}
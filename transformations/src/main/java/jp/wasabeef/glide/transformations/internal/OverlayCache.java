@@ -0,0 +1,173 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Rendered overlays, such as border rings, that depend only on a transformation's parameters
+ * and the output size, so every image of the same size blits the same bitmap.
+ *
+ * The overlays are kept in an LRU bounded by bytes and dropped when the app trims its memory.
+ * Returned bitmaps are shared: draw them, never modify or recycle them.
+ */
+public final class OverlayCache {
+
+  private static final int MAX_CACHED_BYTES = 4 * 1024 * 1024;
+
+  private static final Map<Key, Bitmap> overlays = new LinkedHashMap<>(16, 0.75f, true);
+  private static int cachedBytes;
+  private static boolean registered;
+  /**
+   * Looking an overlay up allocates nothing, a new key is only made for a new overlay.
+   */
+  private static final ThreadLocal<Key> lookups = new ThreadLocal<Key>() {
+    @Override
+    protected Key initialValue() {
+      return new Key("", 0, 0);
+    }
+  };
+
+  private static final ComponentCallbacks2 callbacks = new ComponentCallbacks2() {
+    @Override
+    public void onTrimMemory(int level) {
+      trimMemory(level);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+      // Nothing to do, overlays depend on pixels only.
+    }
+
+    @Override
+    public void onLowMemory() {
+      clear();
+    }
+  };
+
+  private OverlayCache() {
+    // Utility class.
+  }
+
+  /**
+   * Whether an ARGB_8888 overlay of {@code width} x {@code height} can be cached at all. Callers
+   * draw larger ones straight into their result, or into a pooled scratch bitmap, instead of
+   * building a bitmap that {@link #put} would drop.
+   */
+  public static boolean canHold(int width, int height) {
+    return (long) width * height * 4 <= MAX_CACHED_BYTES;
+  }
+
+  /**
+   * @param id identifies the transformation's parameters.
+   */
+  @Nullable
+  public static Bitmap get(@NonNull String id, int width, int height) {
+    Key lookup = lookups.get().set(id, width, height);
+    synchronized (overlays) {
+      return overlays.get(lookup);
+    }
+  }
+
+  /**
+   * Caches {@code overlay} under {@code id} and its size, unless it is larger than the whole
+   * cache, see {@link #canHold}. It must not be drawn into after this call.
+   */
+  public static void put(@NonNull Context context, @NonNull String id, @NonNull Bitmap overlay) {
+    Key key = new Key(id, overlay.getWidth(), overlay.getHeight());
+    int bytes = overlay.getRowBytes() * overlay.getHeight();
+    if (bytes > MAX_CACHED_BYTES) {
+      return;
+    }
+    synchronized (overlays) {
+      if (!registered) {
+        context.getApplicationContext().registerComponentCallbacks(callbacks);
+        registered = true;
+      }
+      Bitmap previous = overlays.put(key, overlay);
+      if (previous != null) {
+        cachedBytes -= previous.getRowBytes() * previous.getHeight();
+      }
+      cachedBytes += bytes;
+      Iterator<Bitmap> it = overlays.values().iterator();
+      while (cachedBytes > MAX_CACHED_BYTES) {
+        Bitmap eldest = it.next();
+        cachedBytes -= eldest.getRowBytes() * eldest.getHeight();
+        // Not recycled, another thread may still be drawing it.
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Drops the overlays once the app's UI is hidden or memory runs low.
+   */
+  public static void trimMemory(int level) {
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+      clear();
+    }
+  }
+
+  public static void clear() {
+    synchronized (overlays) {
+      overlays.clear();
+      cachedBytes = 0;
+    }
+  }
+
+  private static final class Key {
+
+    private String id;
+    private int width;
+    private int height;
+
+    Key(String id, int width, int height) {
+      set(id, width, height);
+    }
+
+    Key set(String id, int width, int height) {
+      this.id = id;
+      this.width = width;
+      this.height = height;
+      return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return id.equals(other.id) && width == other.width && height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+      return (id.hashCode() * 31 + width) * 31 + height;
+    }
+  }
+}
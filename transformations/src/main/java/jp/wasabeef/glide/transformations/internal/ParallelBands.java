@@ -0,0 +1,163 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Splits a range of rows or columns into bands and runs them on an {@link Executor}.
+ *
+ * The calling thread claims bands too, so a band that is never picked up by the executor
+ * (a busy or saturated pool) is simply run by the caller instead of deadlocking it.
+ */
+public final class ParallelBands {
+
+  public interface Task {
+    /**
+     * Processes the half-open range [start, end).
+     */
+    void run(int start, int end);
+  }
+
+  private static final int MAX_THREADS = 4;
+  private static final int MIN_BAND_SIZE = 16;
+
+  private static volatile ExecutorService defaultExecutor;
+
+  private ParallelBands() {
+    // Utility class.
+  }
+
+  /**
+   * A lazily created pool with one daemon thread per core (at most {@value #MAX_THREADS}).
+   */
+  @NonNull
+  public static Executor defaultExecutor() {
+    ExecutorService executor = defaultExecutor;
+    if (executor == null) {
+      synchronized (ParallelBands.class) {
+        executor = defaultExecutor;
+        if (executor == null) {
+          int threads = threadCount();
+          ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), new BandThreadFactory());
+          pool.allowCoreThreadTimeOut(true);
+          defaultExecutor = executor = pool;
+        }
+      }
+    }
+    return executor;
+  }
+
+  public static int threadCount() {
+    return Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Runs {@code task} over [0, length). With a {@code null} executor, or when the range is too
+   * small to be worth splitting, the task runs once on the calling thread. Splitting allocates a
+   * few objects per call, and so does the caller's task: kernels that must not allocate call
+   * their band directly when they have no executor.
+   */
+  public static void run(@Nullable Executor executor, int length, @NonNull final Task task) {
+    final int bands = executor == null ? 1 : Math.min(threadCount(), length / MIN_BAND_SIZE);
+    if (bands <= 1) {
+      task.run(0, length);
+      return;
+    }
+
+    final int bandSize = (length + bands - 1) / bands;
+    final int count = (length + bandSize - 1) / bandSize;
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(count);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final int total = length;
+
+    Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        int band;
+        while ((band = next.getAndIncrement()) < count) {
+          try {
+            int start = band * bandSize;
+            task.run(start, Math.min(total, start + bandSize));
+          } catch (Throwable t) {
+            error.compareAndSet(null, t);
+          } finally {
+            done.countDown();
+          }
+        }
+      }
+    };
+
+    for (int i = 1; i < count; i++) {
+      try {
+        executor.execute(worker);
+      } catch (RejectedExecutionException e) {
+        // The calling thread picks up whatever is left.
+        break;
+      }
+    }
+    worker.run();
+
+    boolean interrupted = false;
+    while (true) {
+      try {
+        done.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    Throwable t = error.get();
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    } else if (t != null) {
+      throw new RuntimeException(t);
+    }
+  }
+
+  private static final class BandThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger id = new AtomicInteger();
+
+    @Override
+    public Thread newThread(@NonNull Runnable r) {
+      Thread thread = new Thread(r, "glide-transformations-band-" + id.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/**
+ * Pixelation by block averages.
+ *
+ * Every {@code block} x {@code block} cell is summed once, averaged and filled back, so each
+ * pixel is read once and written once whatever the block size. Bands are whole rows of blocks
+ * and run in parallel. Unlike GPUImage's shader, which samples one point per cell, the cell
+ * color is the mean of the cell.
+ */
+public final class Pixelate {
+
+  /**
+   * Larger blocks are clamped, beyond this the channel sums of a cell overflow an int.
+   */
+  public static final int MAX_BLOCK = 2896;
+
+  private Pixelate() {
+    // Utility class.
+  }
+
+  /**
+   * Pixelates {@code source} into {@code dest}, which must have the same size.
+   */
+  public static void pixelate(Bitmap source, Bitmap dest, int block,
+                              @Nullable ArrayPool arrayPool, @Nullable Executor executor) {
+    int w = source.getWidth();
+    int h = source.getHeight();
+
+    int[] pix = obtain(arrayPool, w * h);
+    source.getPixels(pix, 0, w, 0, 0, w, h);
+
+    pixelate(pix, w, h, block, arrayPool, w * h < FastBlur.PARALLEL_THRESHOLD ? null : executor);
+
+    dest.setPixels(pix, 0, w, 0, 0, w, h);
+    release(arrayPool, pix);
+  }
+
+  /**
+   * Pixelates the packed ARGB {@code pix} of a {@code w} x {@code h} image in place. Cells on
+   * the right and bottom edges are cut off by the image and averaged over what is left. The
+   * block is at most {@link #MAX_BLOCK} pixels.
+   */
+  public static void pixelate(final int[] pix, final int w, final int h, int block,
+                              @Nullable final ArrayPool arrayPool, @Nullable Executor executor) {
+    final int size = Math.max(1, Math.min(Math.min(block, MAX_BLOCK), Math.max(w, h)));
+    if (size == 1) {
+      return;
+    }
+    final int columns = (w + size - 1) / size;
+    int rows = (h + size - 1) / size;
+
+    if (executor == null) {
+      pixelateRows(pix, w, h, size, columns, 0, rows, arrayPool);
+      return;
+    }
+    ParallelBands.run(executor, rows, new ParallelBands.Task() {
+      @Override
+      public void run(int start, int end) {
+        pixelateRows(pix, w, h, size, columns, start, end, arrayPool);
+      }
+    });
+  }
+
+  private static void pixelateRows(int[] pix, int w, int h, int size, int columns,
+                                   int start, int end, @Nullable ArrayPool arrayPool) {
+    int[] sums = obtain(arrayPool, 4 * columns);
+    for (int row = start; row < end; row++) {
+      int top = row * size;
+      int bottom = Math.min(h, top + size);
+
+      for (int i = 0; i < 4 * columns; i++) {
+        sums[i] = 0;
+      }
+      for (int y = top; y < bottom; y++) {
+        for (int column = 0, x = 0, i = y * w; column < columns; column++) {
+          int a = 0;
+          int r = 0;
+          int g = 0;
+          int b = 0;
+          for (int right = Math.min(w, x + size); x < right; x++, i++) {
+            int p = pix[i];
+            a += p >>> 24;
+            r += (p >> 16) & 0xff;
+            g += (p >> 8) & 0xff;
+            b += p & 0xff;
+          }
+          sums[4 * column] += a;
+          sums[4 * column + 1] += r;
+          sums[4 * column + 2] += g;
+          sums[4 * column + 3] += b;
+        }
+      }
+
+      // Reuse the sums array for the cell colors.
+      int cellHeight = bottom - top;
+      for (int column = 0; column < columns; column++) {
+        int count = (Math.min(w, (column + 1) * size) - column * size) * cellHeight;
+        int half = count >> 1;
+        sums[column] = (sums[4 * column] + half) / count << 24
+            | (sums[4 * column + 1] + half) / count << 16
+            | (sums[4 * column + 2] + half) / count << 8
+            | (sums[4 * column + 3] + half) / count;
+      }
+      for (int y = top; y < bottom; y++) {
+        for (int column = 0, x = 0, i = y * w; column < columns; column++) {
+          int color = sums[column];
+          for (int right = Math.min(w, x + size); x < right; x++, i++) {
+            pix[i] = color;
+          }
+        }
+      }
+    }
+    release(arrayPool, sums);
+  }
+
+  private static int[] obtain(@Nullable ArrayPool arrayPool, int size) {
+    return arrayPool == null ? new int[size] : arrayPool.get(size, int[].class);
+  }
+
+  private static void release(@Nullable ArrayPool arrayPool, int[] array) {
+    if (arrayPool != null) {
+      arrayPool.put(array);
+    }
+  }
+}
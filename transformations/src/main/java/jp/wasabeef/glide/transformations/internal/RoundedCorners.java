@@ -0,0 +1,195 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Rounds the corners of a mutable ARGB_8888 bitmap in place.
+ *
+ * Only the radius x radius block in each rounded corner changes, its alpha is multiplied by the
+ * anti-aliased coverage of a quarter circle. The coverage depends on nothing but the radius, so
+ * it is computed once into a small LRU and mirrored for the four corners.
+ */
+public final class RoundedCorners {
+
+  public static final int TOP_LEFT = 1;
+  public static final int TOP_RIGHT = 1 << 1;
+  public static final int BOTTOM_LEFT = 1 << 2;
+  public static final int BOTTOM_RIGHT = 1 << 3;
+
+  /**
+   * Horizontal samples per pixel column when integrating the covered area.
+   */
+  private static final int SAMPLES = 16;
+
+  private static final int MAX_CACHED_RADII = 8;
+  /**
+   * Coverage of larger radii is built for one use and not cached.
+   */
+  private static final int MAX_CACHED_BYTES = 512 * 1024;
+
+  private static final Map<Integer, byte[]> coverages =
+      new LinkedHashMap<>(MAX_CACHED_RADII, 0.75f, true);
+  private static int cachedBytes;
+
+  private RoundedCorners() {
+    // Utility class.
+  }
+
+  /**
+   * Whether {@link #round} can handle {@code bitmap}: it must be mutable, ARGB_8888 and large
+   * enough for the corners not to overlap.
+   */
+  public static boolean canRound(Bitmap bitmap, int radius, int margin) {
+    return bitmap.isMutable() && bitmap.getConfig() == Bitmap.Config.ARGB_8888
+        && radius > 0 && margin >= 0
+        && bitmap.getWidth() >= 2 * (radius + margin)
+        && bitmap.getHeight() >= 2 * (radius + margin);
+  }
+
+  /**
+   * Clears a {@code margin} wide frame and rounds the {@code corners} of what is inside it, see
+   * {@link #canRound}.
+   *
+   * @param corners a combination of {@link #TOP_LEFT}, {@link #TOP_RIGHT}, {@link #BOTTOM_LEFT}
+   *                and {@link #BOTTOM_RIGHT}.
+   */
+  public static void round(Bitmap bitmap, int radius, int margin, int corners,
+                           @Nullable ArrayPool arrayPool) {
+    int w = bitmap.getWidth();
+    int h = bitmap.getHeight();
+    bitmap.setHasAlpha(true);
+
+    if (margin > 0) {
+      int[] clear = obtain(arrayPool, Math.max(w, h) * margin);
+      Arrays.fill(clear, 0, Math.max(w, h) * margin, 0);
+      bitmap.setPixels(clear, 0, w, 0, 0, w, margin);
+      bitmap.setPixels(clear, 0, w, 0, h - margin, w, margin);
+      bitmap.setPixels(clear, 0, margin, 0, margin, margin, h - 2 * margin);
+      bitmap.setPixels(clear, 0, margin, w - margin, margin, margin, h - 2 * margin);
+      release(arrayPool, clear);
+    }
+
+    byte[] coverage = coverage(radius);
+    int[] block = obtain(arrayPool, radius * radius);
+    int left = margin;
+    int top = margin;
+    int right = w - margin - radius;
+    int bottom = h - margin - radius;
+    if ((corners & TOP_LEFT) != 0) {
+      roundCorner(bitmap, block, coverage, radius, left, top, false, false);
+    }
+    if ((corners & TOP_RIGHT) != 0) {
+      roundCorner(bitmap, block, coverage, radius, right, top, true, false);
+    }
+    if ((corners & BOTTOM_LEFT) != 0) {
+      roundCorner(bitmap, block, coverage, radius, left, bottom, false, true);
+    }
+    if ((corners & BOTTOM_RIGHT) != 0) {
+      roundCorner(bitmap, block, coverage, radius, right, bottom, true, true);
+    }
+    release(arrayPool, block);
+  }
+
+  private static void roundCorner(Bitmap bitmap, int[] block, byte[] coverage, int r, int x,
+                                  int y, boolean flipX, boolean flipY) {
+    bitmap.getPixels(block, 0, r, x, y, r, r);
+    for (int by = 0; by < r; by++) {
+      // Row and column of the coverage, counted from the outer corner.
+      int cy = flipY ? r - 1 - by : by;
+      for (int bx = 0; bx < r; bx++) {
+        int cx = flipX ? r - 1 - bx : bx;
+        int c = coverage[cy * r + cx] & 0xff;
+        if (c == 0xff) {
+          continue;
+        }
+        int i = by * r + bx;
+        int p = block[i];
+        int a = ((p >>> 24) * c + 127) / 255;
+        block[i] = (a << 24) | (p & 0x00ffffff);
+      }
+    }
+    bitmap.setPixels(block, 0, r, x, y, r, r);
+  }
+
+  /**
+   * Coverage of the top-left corner block, row by row: the area of each pixel inside the circle
+   * of {@code radius} around the inner corner of the block, scaled to 0..255.
+   */
+  static byte[] coverage(int radius) {
+    synchronized (coverages) {
+      byte[] cached = coverages.get(radius);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    int r = radius;
+    byte[] coverage = new byte[r * r];
+    double r2 = (double) r * r;
+    double step = 1.0 / SAMPLES;
+    for (int x = 0; x < r; x++) {
+      // The circle's top edge at the middle of each sample column, the inside is below it.
+      double[] edges = new double[SAMPLES];
+      for (int s = 0; s < SAMPLES; s++) {
+        double dx = r - (x + (s + 0.5) * step);
+        edges[s] = r - Math.sqrt(Math.max(0, r2 - dx * dx));
+      }
+      for (int y = 0; y < r; y++) {
+        double area = 0;
+        for (int s = 0; s < SAMPLES; s++) {
+          area += Math.min(1, Math.max(0, y + 1 - edges[s]));
+        }
+        coverage[y * r + x] = (byte) Math.round(area * step * 255);
+      }
+    }
+
+    if (coverage.length <= MAX_CACHED_BYTES) {
+      synchronized (coverages) {
+        if (coverages.put(radius, coverage) == null) {
+          cachedBytes += coverage.length;
+        }
+        Iterator<byte[]> it = coverages.values().iterator();
+        while (coverages.size() > MAX_CACHED_RADII || cachedBytes > MAX_CACHED_BYTES) {
+          cachedBytes -= it.next().length;
+          it.remove();
+        }
+      }
+    }
+    return coverage;
+  }
+
+  private static int[] obtain(@Nullable ArrayPool arrayPool, int size) {
+    return arrayPool == null ? new int[size] : arrayPool.get(size, int[].class);
+  }
+
+  private static void release(@Nullable ArrayPool arrayPool, int[] array) {
+    if (arrayPool != null) {
+      arrayPool.put(array);
+    }
+  }
+}
@@ -0,0 +1,227 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/**
+ * 3x3 Sobel edge filters matching GPUImage's sketch and toon shaders.
+ *
+ * Each row band keeps the intensities of three rows in line buffers, so the intensity of every
+ * pixel is computed once and the Sobel sums, and for toon the posterization, happen in the same
+ * sweep that writes the output. Pixels outside the image repeat the edge, like a clamped
+ * texture. Intensities are kept in 1/256 steps of a color unit.
+ */
+public final class Sobel {
+
+  private static final int UNIT = 255 << 8;
+
+  private Sobel() {
+    // Utility class.
+  }
+
+  /**
+   * White where the image is flat, darker the stronger its luminance edges, opaque.
+   */
+  public static void sketch(Bitmap source, Bitmap dest, @Nullable ArrayPool arrayPool,
+                            @Nullable Executor executor) {
+    apply(source, dest, false, 0, 0, arrayPool, executor);
+  }
+
+  /**
+   * Colors posterized to {@code quantizationLevels} levels, black where the red channel has an
+   * edge stronger than {@code threshold}. Alpha is kept.
+   */
+  public static void toon(Bitmap source, Bitmap dest, float threshold, float quantizationLevels,
+                          @Nullable ArrayPool arrayPool, @Nullable Executor executor) {
+    apply(source, dest, true, threshold, quantizationLevels, arrayPool, executor);
+  }
+
+  private static void apply(Bitmap source, Bitmap dest, boolean toon, float threshold,
+                            float quantizationLevels, @Nullable ArrayPool arrayPool,
+                            @Nullable Executor executor) {
+    int w = source.getWidth();
+    int h = source.getHeight();
+
+    int[] src = obtain(arrayPool, w * h);
+    int[] dst = obtain(arrayPool, w * h);
+    source.getPixels(src, 0, w, 0, 0, w, h);
+
+    if (w * h < FastBlur.PARALLEL_THRESHOLD) {
+      executor = null;
+    }
+    if (toon) {
+      toon(src, dst, w, h, threshold, quantizationLevels, arrayPool, executor);
+    } else {
+      sketch(src, dst, w, h, arrayPool, executor);
+    }
+
+    dest.setPixels(dst, 0, w, 0, 0, w, h);
+    release(arrayPool, src);
+    release(arrayPool, dst);
+  }
+
+  public static void sketch(final int[] src, final int[] dst, final int w, final int h,
+                            @Nullable final ArrayPool arrayPool, @Nullable Executor executor) {
+    if (executor == null) {
+      sketchRows(src, dst, w, h, 0, h, arrayPool);
+      return;
+    }
+    ParallelBands.run(executor, h, new ParallelBands.Task() {
+      @Override
+      public void run(int start, int end) {
+        sketchRows(src, dst, w, h, start, end, arrayPool);
+      }
+    });
+  }
+
+  private static void sketchRows(int[] src, int[] dst, int w, int h, int start, int end,
+                                 @Nullable ArrayPool arrayPool) {
+    int[] lines = obtain(arrayPool, 3 * w);
+    for (int y = start; y < end; y++) {
+      fillLines(lines, src, w, h, y, start, false);
+      int above = ((y + 2) % 3) * w;
+      int current = (y % 3) * w;
+      int below = ((y + 1) % 3) * w;
+      for (int x = 0, i = y * w; x < w; x++, i++) {
+        long magnitude = magnitude(lines, above, current, below, x, w);
+        // 1 - |gradient|, clamped.
+        int value = 255 - (int) ((Math.sqrt(magnitude) + 128) / 256);
+        value = value < 0 ? 0 : value;
+        dst[i] = 0xff000000 | (value << 16) | (value << 8) | value;
+      }
+    }
+    release(arrayPool, lines);
+  }
+
+  public static void toon(final int[] src, final int[] dst, final int w, final int h,
+                          float threshold, float quantizationLevels,
+                          @Nullable final ArrayPool arrayPool, @Nullable Executor executor) {
+    final int[] posterized = obtain(arrayPool, 256);
+    for (int c = 0; c < 256; c++) {
+      float level = (float) Math.floor(c / 255f * quantizationLevels + 0.5f) / quantizationLevels;
+      posterized[c] = Math.max(0, Math.min(255, Math.round(level * 255)));
+    }
+    // The edge test compares squared magnitudes, no square root per pixel.
+    double limit = Math.max(0, threshold) * UNIT;
+    final long edge = (long) Math.ceil(limit * limit);
+
+    if (executor == null) {
+      toonRows(src, dst, w, h, posterized, edge, 0, h, arrayPool);
+    } else {
+      ParallelBands.run(executor, h, new ParallelBands.Task() {
+        @Override
+        public void run(int start, int end) {
+          toonRows(src, dst, w, h, posterized, edge, start, end, arrayPool);
+        }
+      });
+    }
+    release(arrayPool, posterized);
+  }
+
+  private static void toonRows(int[] src, int[] dst, int w, int h, int[] posterized, long edge,
+                               int start, int end, @Nullable ArrayPool arrayPool) {
+    int[] lines = obtain(arrayPool, 3 * w);
+    for (int y = start; y < end; y++) {
+      fillLines(lines, src, w, h, y, start, true);
+      int above = ((y + 2) % 3) * w;
+      int current = (y % 3) * w;
+      int below = ((y + 1) % 3) * w;
+      for (int x = 0, i = y * w; x < w; x++, i++) {
+        int p = src[i];
+        if (magnitude(lines, above, current, below, x, w) >= edge) {
+          dst[i] = p & 0xff000000;
+        } else {
+          dst[i] = (p & 0xff000000)
+              | (posterized[(p >> 16) & 0xff] << 16)
+              | (posterized[(p >> 8) & 0xff] << 8)
+              | posterized[p & 0xff];
+        }
+      }
+    }
+    release(arrayPool, lines);
+  }
+
+  /**
+   * Makes rows y - 1, y and y + 1 available at lines (y + 2) % 3, y % 3 and (y + 1) % 3. Only
+   * the new row is converted, except at the start of a band.
+   */
+  private static void fillLines(int[] lines, int[] src, int w, int h, int y, int start,
+                                boolean red) {
+    if (y == start) {
+      intensities(src, clamp(y - 1, h) * w, lines, ((y + 2) % 3) * w, w, red);
+      intensities(src, y * w, lines, (y % 3) * w, w, red);
+    }
+    intensities(src, clamp(y + 1, h) * w, lines, ((y + 1) % 3) * w, w, red);
+  }
+
+  /**
+   * Squared Sobel gradient at column x, in intensity units squared.
+   */
+  private static long magnitude(int[] lines, int above, int current, int below, int x, int w) {
+    int left = x > 0 ? x - 1 : 0;
+    int right = x < w - 1 ? x + 1 : w - 1;
+    int topLeft = lines[above + left];
+    int top = lines[above + x];
+    int topRight = lines[above + right];
+    int bottomLeft = lines[below + left];
+    int bottom = lines[below + x];
+    int bottomRight = lines[below + right];
+    long gh = -topLeft - 2 * top - topRight + bottomLeft + 2 * bottom + bottomRight;
+    long gv = -bottomLeft - 2 * lines[current + left] - topLeft
+        + bottomRight + 2 * lines[current + right] + topRight;
+    return gh * gh + gv * gv;
+  }
+
+  /**
+   * Luminance with GPUImage's weights (0.2125, 0.7154, 0.0721), or the red channel as the toon
+   * shader samples it, times 256.
+   */
+  private static void intensities(int[] src, int from, int[] lines, int to, int w, boolean red) {
+    if (red) {
+      for (int x = 0; x < w; x++) {
+        lines[to + x] = src[from + x] >> 8 & 0xff00;
+      }
+    } else {
+      for (int x = 0; x < w; x++) {
+        int p = src[from + x];
+        lines[to + x] = 54 * ((p >> 16) & 0xff) + 183 * ((p >> 8) & 0xff) + 19 * (p & 0xff);
+      }
+    }
+  }
+
+  private static int clamp(int y, int h) {
+    return y < 0 ? 0 : y >= h ? h - 1 : y;
+  }
+
+  private static int[] obtain(@Nullable ArrayPool arrayPool, int size) {
+    return arrayPool == null ? new int[size] : arrayPool.get(size, int[].class);
+  }
+
+  private static void release(@Nullable ArrayPool arrayPool, int[] array) {
+    if (arrayPool != null) {
+      arrayPool.put(array);
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package jp.wasabeef.glide.transformations.internal;
 
 import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.os.Build;
 
@@ -11,6 +13,10 @@ import androidx.renderscript.RSRuntimeException;
 import androidx.renderscript.RenderScript;
 import androidx.renderscript.ScriptIntrinsicBlur;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Copyright (C) 2018 Wasabeef
  *
@@ -27,45 +33,134 @@ import androidx.renderscript.ScriptIntrinsicBlur;
  * limitations under the License.
  */
 
+/**
+ * Blurs with the support library {@link ScriptIntrinsicBlur}.
+ *
+ * The RenderScript context, the intrinsic and the Allocations of the last few bitmap sizes are
+ * kept between calls, creating a context costs more than blurring a thumbnail. Calls are
+ * serialized, the intrinsic already uses every core. Everything is released on
+ * {@link #release()} or when the application trims its memory.
+ */
 public class SupportRSBlur {
 
+  private static final int MAX_CACHED_SIZES = 4;
+
+  private static RenderScript rs;
+  private static ScriptIntrinsicBlur script;
+  private static Context appContext;
+  private static final Map<Long, Allocation[]> allocations =
+      new LinkedHashMap<Long, Allocation[]>(MAX_CACHED_SIZES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Allocation[]> eldest) {
+          if (size() > MAX_CACHED_SIZES) {
+            destroy(eldest.getValue());
+            return true;
+          }
+          return false;
+        }
+      };
+
+  private static final ComponentCallbacks2 callbacks = new ComponentCallbacks2() {
+    @Override
+    public void onTrimMemory(int level) {
+      trimMemory(level);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+      // Nothing to do.
+    }
+
+    @Override
+    public void onLowMemory() {
+      release();
+    }
+  };
+
   @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
   public static Bitmap blur(Context context, Bitmap bitmap, int radius) throws RSRuntimeException {
-    RenderScript rs = null;
-    Allocation input = null;
-    Allocation output = null;
-    ScriptIntrinsicBlur blur = null;
-    try {
-      rs = RenderScript.create(context);
-      rs.setMessageHandler(new RenderScript.RSMessageHandler());
-      input = Allocation.createFromBitmap(rs, bitmap, Allocation.MipmapControl.MIPMAP_NONE,
-          Allocation.USAGE_SCRIPT);
-      output = Allocation.createTyped(rs, input.getType());
-      blur = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
-
-      blur.setInput(input);
-      blur.setRadius(radius);
-      blur.forEach(output);
-      output.copyTo(bitmap);
-    } finally {
-      if (rs != null) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-          RenderScript.releaseAllContexts();
-        } else {
-          rs.destroy();
+    synchronized (SupportRSBlur.class) {
+      try {
+        if (rs == null) {
+          appContext = context.getApplicationContext();
+          rs = RenderScript.create(appContext);
+          rs.setMessageHandler(new RenderScript.RSMessageHandler());
+          script = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
+          appContext.registerComponentCallbacks(callbacks);
         }
-      }
-      if (input != null) {
-        input.destroy();
-      }
-      if (output != null) {
-        output.destroy();
-      }
-      if (blur != null) {
-        blur.destroy();
+
+        Allocation[] io = obtain(bitmap);
+        io[0].copyFrom(bitmap);
+        script.setInput(io[0]);
+        script.setRadius(radius);
+        script.forEach(io[1]);
+        io[1].copyTo(bitmap);
+      } catch (RuntimeException e) {
+        // A context that failed once is not trusted again.
+        release();
+        throw e;
       }
     }
 
     return bitmap;
   }
+
+  /**
+   * Drops the cached Allocations when the app is hidden, and the context as well once it moves
+   * to the background.
+   */
+  public static synchronized void trimMemory(int level) {
+    if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+      release();
+    } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+      clearAllocations();
+    }
+  }
+
+  /**
+   * Destroys the RenderScript context and everything cached with it. The next blur creates them
+   * again.
+   */
+  public static synchronized void release() {
+    clearAllocations();
+    if (script != null) {
+      script.destroy();
+      script = null;
+    }
+    if (rs != null) {
+      rs.destroy();
+      rs = null;
+    }
+    if (appContext != null) {
+      appContext.unregisterComponentCallbacks(callbacks);
+      appContext = null;
+    }
+  }
+
+  private static Allocation[] obtain(Bitmap bitmap) {
+    Bitmap.Config config = bitmap.getConfig();
+    long key = ((long) bitmap.getWidth() << 32) | ((long) bitmap.getHeight() << 3)
+        | (config == null ? 7 : config.ordinal());
+    Allocation[] io = allocations.get(key);
+    if (io == null) {
+      Allocation input = Allocation.createFromBitmap(rs, bitmap,
+          Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
+      io = new Allocation[] { input, Allocation.createTyped(rs, input.getType()) };
+      allocations.put(key, io);
+    }
+    return io;
+  }
+
+  private static void clearAllocations() {
+    for (Iterator<Allocation[]> it = allocations.values().iterator(); it.hasNext(); ) {
+      destroy(it.next());
+      it.remove();
+    }
+  }
+
+  private static void destroy(Allocation[] io) {
+    for (Allocation allocation : io) {
+      allocation.destroy();
+    }
+  }
 }
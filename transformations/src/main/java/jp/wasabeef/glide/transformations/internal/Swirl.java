@@ -0,0 +1,284 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright (C) 2018 Wasabeef
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/**
+ * Swirl distortion as a gather through a cached displacement map.
+ *
+ * The warp is the one of GPUImage's swirl shader: inside {@code radius} of {@code center}, both
+ * in normalized coordinates, the source point is rotated about the center by
+ * {@code angle * 8 * percent^2}, percent growing from 0 at the rim to 1 at the center. For a
+ * given size and parameters the source point of every pixel never changes, so it is computed
+ * once into a fixed-point map and kept in a small LRU; repeated swirls of same-sized images only
+ * pay for the bilinear gather.
+ *
+ * Each map entry is one int: the index of the top left source pixel, followed by the x and y
+ * fractions with as many bits as the index leaves free, at most 8. A 1080 x 1920 map keeps
+ * 5 bits, so the interpolation weights are off by at most 1/64.
+ */
+public final class Swirl {
+
+  private static final int MAX_FRACTION_BITS = 8;
+  private static final int ONE = 1 << MAX_FRACTION_BITS;
+
+  /**
+   * Marks a pixel outside the swirl, which is copied as is. Packed entries are never negative.
+   */
+  private static final int UNMOVED = -1;
+
+  private static final int MAX_CACHED_MAPS = 4;
+  /**
+   * One int per pixel, enough for a 1080 x 1920 map. Maps of larger images are built for one use
+   * and not cached.
+   */
+  private static final int MAX_CACHED_INTS = 2 * 1024 * 1024;
+
+  private static final Map<Key, int[]> maps = new LinkedHashMap<>(MAX_CACHED_MAPS, 0.75f, true);
+  private static int cachedInts;
+  /**
+   * Looking a map up allocates nothing, a new key is only made for a new map.
+   */
+  private static final ThreadLocal<Key> lookups = new ThreadLocal<Key>() {
+    @Override
+    protected Key initialValue() {
+      return new Key(0, 0, 0, 0, 0, 0);
+    }
+  };
+
+  private Swirl() {
+    // Utility class.
+  }
+
+  /**
+   * Swirls {@code source} into {@code dest}, which must have the same size.
+   */
+  public static void swirl(Bitmap source, Bitmap dest, float radius, float angle, float centerX,
+                           float centerY, @Nullable ArrayPool arrayPool,
+                           @Nullable Executor executor) {
+    int w = source.getWidth();
+    int h = source.getHeight();
+
+    int[] src = obtain(arrayPool, w * h);
+    int[] dst = obtain(arrayPool, w * h);
+    source.getPixels(src, 0, w, 0, 0, w, h);
+
+    swirl(src, dst, w, h, radius, angle, centerX, centerY,
+        w * h < FastBlur.PARALLEL_THRESHOLD ? null : executor);
+
+    dest.setPixels(dst, 0, w, 0, 0, w, h);
+    release(arrayPool, src);
+    release(arrayPool, dst);
+  }
+
+  public static void swirl(final int[] src, final int[] dst, final int w, final int h,
+                           float radius, float angle, float centerX, float centerY,
+                           @Nullable Executor executor) {
+    final int[] map = getMap(w, h, radius, angle, centerX, centerY);
+    final int bits = fractionBits(w, h);
+    final int mask = (1 << bits) - 1;
+    final int scale = MAX_FRACTION_BITS - bits;
+
+    if (executor == null) {
+      swirlRows(src, dst, w, map, bits, mask, scale, 0, h);
+      return;
+    }
+    ParallelBands.run(executor, h, new ParallelBands.Task() {
+      @Override
+      public void run(int start, int end) {
+        swirlRows(src, dst, w, map, bits, mask, scale, start, end);
+      }
+    });
+  }
+
+  private static void swirlRows(int[] src, int[] dst, int w, int[] map, int bits, int mask,
+                                int scale, int start, int end) {
+    for (int i = start * w, last = end * w; i < last; i++) {
+      int entry = map[i];
+      if (entry == UNMOVED) {
+        dst[i] = src[i];
+        continue;
+      }
+      // A fraction is only non-zero when there is a pixel right of or below p0.
+      int fx = (entry & mask) << scale;
+      int fy = ((entry >>> bits) & mask) << scale;
+      int p0 = entry >>> (bits + bits);
+      int top = fx == 0 ? src[p0] : lerp(src[p0], src[p0 + 1], fx);
+      if (fy == 0) {
+        dst[i] = top;
+      } else {
+        int p1 = p0 + w;
+        dst[i] = lerp(top, fx == 0 ? src[p1] : lerp(src[p1], src[p1 + 1], fx), fy);
+      }
+    }
+  }
+
+  /**
+   * Fraction bits per axis of a packed map entry, whatever the pixel index of a {@code w} x
+   * {@code h} image leaves of 31 bits.
+   */
+  static int fractionBits(int w, int h) {
+    int indexBits = 32 - Integer.numberOfLeadingZeros(w * h - 1);
+    return Math.min(MAX_FRACTION_BITS, (31 - indexBits) / 2);
+  }
+
+  /**
+   * Interpolates two ARGB colors, two 8 bit channels at a time in 16 bit lanes.
+   */
+  private static int lerp(int a, int b, int f) {
+    if (f == 0) {
+      return a;
+    }
+    int g = ONE - f;
+    int rb = (((a & 0xff00ff) * g + (b & 0xff00ff) * f) >>> MAX_FRACTION_BITS) & 0xff00ff;
+    int ag = (((a >>> 8) & 0xff00ff) * g + ((b >>> 8) & 0xff00ff) * f) & 0xff00ff00;
+    return ag | rb;
+  }
+
+  @NonNull
+  private static int[] getMap(int w, int h, float radius, float angle, float centerX,
+                              float centerY) {
+    Key lookup = lookups.get().set(w, h, radius, angle, centerX, centerY);
+    synchronized (maps) {
+      int[] map = maps.get(lookup);
+      if (map != null) {
+        return map;
+      }
+    }
+
+    int[] map = buildMap(w, h, radius, angle, centerX, centerY);
+    if (map.length <= MAX_CACHED_INTS) {
+      Key key = new Key(w, h, radius, angle, centerX, centerY);
+      synchronized (maps) {
+        if (maps.put(key, map) == null) {
+          cachedInts += map.length;
+        }
+        Iterator<int[]> it = maps.values().iterator();
+        while ((maps.size() > MAX_CACHED_MAPS || cachedInts > MAX_CACHED_INTS) && it.hasNext()) {
+          cachedInts -= it.next().length;
+          it.remove();
+        }
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Source positions clamped to the image, packed as described in {@link Swirl}.
+   */
+  private static int[] buildMap(int w, int h, float radius, float angle, float centerX,
+                                float centerY) {
+    int[] map = new int[w * h];
+    int bits = fractionBits(w, h);
+    int one = 1 << bits;
+    int mask = one - 1;
+    float maxX = w - 1;
+    float maxY = h - 1;
+    for (int y = 0, i = 0; y < h; y++) {
+      // Texture coordinates of the pixel center.
+      float v = (y + 0.5f) / h - centerY;
+      for (int x = 0; x < w; x++, i++) {
+        float u = (x + 0.5f) / w - centerX;
+        float dist = (float) Math.sqrt(u * u + v * v);
+        if (dist >= radius) {
+          map[i] = UNMOVED;
+          continue;
+        }
+        float percent = (radius - dist) / radius;
+        double theta = percent * percent * angle * 8.0;
+        float s = (float) Math.sin(theta);
+        float c = (float) Math.cos(theta);
+        float su = u * c - v * s + centerX;
+        float sv = u * s + v * c + centerY;
+        float sx = Math.max(0, Math.min(maxX, su * w - 0.5f));
+        float sy = Math.max(0, Math.min(maxY, sv * h - 0.5f));
+        // Rounding may carry into the integer part, never past the last pixel.
+        int qx = Math.round(sx * one);
+        int qy = Math.round(sy * one);
+        map[i] = (((qy >> bits) * w + (qx >> bits)) << (bits + bits))
+            | (qy & mask) << bits | (qx & mask);
+      }
+    }
+    return map;
+  }
+
+  private static int[] obtain(@Nullable ArrayPool arrayPool, int size) {
+    return arrayPool == null ? new int[size] : arrayPool.get(size, int[].class);
+  }
+
+  private static void release(@Nullable ArrayPool arrayPool, int[] array) {
+    if (arrayPool != null) {
+      arrayPool.put(array);
+    }
+  }
+
+  private static final class Key {
+    private int width;
+    private int height;
+    private float radius;
+    private float angle;
+    private float centerX;
+    private float centerY;
+
+    Key(int width, int height, float radius, float angle, float centerX, float centerY) {
+      set(width, height, radius, angle, centerX, centerY);
+    }
+
+    Key set(int width, int height, float radius, float angle, float centerX, float centerY) {
+      this.width = width;
+      this.height = height;
+      this.radius = radius;
+      this.angle = angle;
+      this.centerX = centerX;
+      this.centerY = centerY;
+      return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return other.width == width && other.height == height && other.radius == radius
+          && other.angle == angle && other.centerX == centerX && other.centerY == centerY;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = width;
+      result = 31 * result + height;
+      result = 31 * result + Float.floatToIntBits(radius);
+      result = 31 * result + Float.floatToIntBits(angle);
+      result = 31 * result + Float.floatToIntBits(centerX);
+      result = 31 * result + Float.floatToIntBits(centerY);
+      return result;
+    }
+  }
+}
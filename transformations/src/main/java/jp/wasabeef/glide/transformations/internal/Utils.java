@@ -1,6 +1,7 @@
 package jp.wasabeef.glide.transformations.internal;
 
 import android.content.Context;
+import android.graphics.Matrix;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 
@@ -40,4 +41,28 @@ public final class Utils {
 
     return drawable;
   }
+
+  /**
+   * Sets {@code m} to the matrix {@code TransformationUtils.centerCrop} draws an
+   * {@code inWidth} x {@code inHeight} bitmap into a {@code width} x {@code height} one with,
+   * including its rounding of the translation.
+   */
+  public static void centerCrop(Matrix m, int inWidth, int inHeight, int width, int height) {
+    m.reset();
+    if (inWidth == width && inHeight == height) {
+      return;
+    }
+    float scale;
+    float dx = 0;
+    float dy = 0;
+    if (inWidth * height > width * inHeight) {
+      scale = (float) height / (float) inHeight;
+      dx = (width - inWidth * scale) * 0.5f;
+    } else {
+      scale = (float) width / (float) inWidth;
+      dy = (height - inHeight * scale) * 0.5f;
+    }
+    m.setScale(scale, scale);
+    m.postTranslate((int) (dx + 0.5f), (int) (dy + 0.5f));
+  }
 }
@@ -0,0 +1,55 @@
+package jp.wasabeef.glide.transformations;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.MultiTransformation;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.resource.bitmap.CenterCrop;
+
+import org.junit.Test;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ChainTransformationTest {
+
+  // Borders are left out, their widths go through Resources, which is not there on the JVM.
+  @Test
+  public void writesTheKeyOfMultiTransformation() throws NoSuchAlgorithmException {
+    List<List<Transformation<Bitmap>>> chains = Arrays.asList(
+        Arrays.<Transformation<Bitmap>>asList(new CenterCrop()),
+        Arrays.<Transformation<Bitmap>>asList(new CenterCrop(), new CropSquareTransformation(),
+            new BorderCircleCrop()),
+        Arrays.<Transformation<Bitmap>>asList(new CropTransformation(40, 30),
+            new MaskTransformation(1, true), new BlurTransformation(10),
+            new CropSquareTransformation(), new BorderCircleCrop(),
+            new MaskTransformation(2)));
+
+    for (List<Transformation<Bitmap>> steps : chains) {
+      ChainTransformation chain = new ChainTransformation(steps);
+      assertArrayEquals(steps.toString(), digest(new MultiTransformation<>(steps)),
+          digest(chain));
+    }
+  }
+
+  @Test
+  public void fusesRunsBetweenOtherSteps() {
+    // Crop and mask, then the blur on its own, then crop and circle, then the second mask.
+    ChainTransformation chain = new ChainTransformation(new CropTransformation(40, 30),
+        new MaskTransformation(1, true), new BlurTransformation(10),
+        new CropSquareTransformation(), new BorderCircleCrop(), new MaskTransformation(2));
+    assertEquals(4, chain.getSegments().size());
+  }
+
+  private static byte[] digest(Transformation<Bitmap> transformation)
+      throws NoSuchAlgorithmException {
+    MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+    transformation.updateDiskCacheKey(messageDigest);
+    return messageDigest.digest();
+  }
+}
@@ -0,0 +1,43 @@
+package jp.wasabeef.glide.transformations.gpu;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SharedFilterRendererTest {
+
+  @Test
+  public void flipRowsUndoesGlReadPixels() {
+    Random random = new Random(1);
+    int[][] sizes = { { 1, 1 }, { 3, 1 }, { 1, 4 }, { 5, 2 }, { 4, 3 }, { 17, 9 } };
+    for (int[] size : sizes) {
+      int width = size[0];
+      int height = size[1];
+      int rowBytes = width * 4;
+      // Premultiplied RGBA rows, top down, as an ARGB_8888 bitmap holds them. The first pixel is
+      // half transparent: its bytes must come through untouched, not premultiplied again.
+      byte[] upright = new byte[rowBytes * height];
+      random.nextBytes(upright);
+      upright[0] = 0x40;
+      upright[1] = 0x20;
+      upright[2] = 0x10;
+      upright[3] = (byte) 0x80;
+
+      // Room past the image, like a buffer kept from a larger one.
+      ByteBuffer pixels = ByteBuffer.allocateDirect(upright.length + 12);
+      for (int y = height - 1; y >= 0; y--) {
+        pixels.put(upright, y * rowBytes, rowBytes);
+      }
+      SharedFilterRenderer.flipRows(pixels, rowBytes, height, new byte[rowBytes * 2]);
+
+      assertEquals(0, pixels.position());
+      byte[] actual = new byte[upright.length];
+      pixels.get(actual);
+      assertArrayEquals(width + "x" + height, upright, actual);
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DistanceFieldTest {
+
+  // { width, height, stride }
+  private static final int[][] SIZES = {
+      { 1, 1, 1 }, { 5, 3, 8 }, { 37, 23, 40 }, { 64, 48, 64 }, { 30, 70, 33 }
+  };
+
+  private static final int[][] BANDS = { { 1 }, { 3 }, { 2, 3 }, { 6, 1 }, { 10, 20 } };
+
+  @Test
+  public void bandsMatchBruteForce() {
+    Random random = new Random(1);
+    GarbageArrayPool pool = new GarbageArrayPool();
+    for (int[] size : SIZES) {
+      int w = size[0];
+      int h = size[1];
+      int stride = size[2];
+      byte[] alpha = mask(random, w, h, stride);
+      float[] distance = referenceDistances(alpha, stride, w, h);
+      int[] src = image(random, w, h);
+
+      for (int[] widths : BANDS) {
+        int[] colors = new int[widths.length];
+        for (int k = 0; k < colors.length; k++) {
+          colors[k] = random.nextInt();
+        }
+        int[] expected = src.clone();
+        referenceDrawBands(expected, distance, alpha, stride, w, widths, colors);
+
+        int reach = 0;
+        for (int bandWidth : widths) {
+          reach += bandWidth;
+        }
+        String message = w + "x" + h + " reach " + reach;
+        int[] pix = src.clone();
+        DistanceField.compute(alpha, stride, w, h, reach, null).drawBands(pix, widths, colors);
+        assertArrayEquals(message, expected, pix);
+
+        pix = src.clone();
+        DistanceField.compute(alpha, stride, w, h, reach, pool).drawBands(pix, widths, colors);
+        assertArrayEquals(message + " pooled", expected, pix);
+
+        // A field reaching further draws the same bands.
+        pix = src.clone();
+        DistanceField.compute(alpha, stride, w, h, DistanceField.MAX_REACH, pool)
+            .drawBands(pix, widths, colors);
+        assertArrayEquals(message + " at full reach", expected, pix);
+      }
+    }
+    assertEquals(0, pool.outstanding());
+  }
+
+  @Test
+  public void keepsOnlyPixelsWithinReach() {
+    int w = 200;
+    int h = 300;
+    byte[] alpha = new byte[w * h];
+    for (int i = 0; i < alpha.length; i++) {
+      alpha[i] = (byte) 0xff;
+    }
+
+    // Only the frame the bands cover is kept: 4 pixels wide along every side.
+    DistanceField field = DistanceField.compute(alpha, w, w, h, 4, null);
+    int inside = (w - 8) * (h - 8);
+    assertEquals((w * h - inside) * 9, field.getByteCount());
+
+    field = DistanceField.compute(alpha, w, w, h, 1000, null);
+    assertEquals(DistanceField.MAX_REACH, field.getReach());
+    assertTrue(field.getByteCount() <= w * h * 9);
+  }
+
+  /**
+   * Random overlapping discs with soft edges, and a speck of noise.
+   */
+  private static byte[] mask(Random random, int w, int h, int stride) {
+    byte[] alpha = new byte[stride * h];
+    for (int i = 0; i < alpha.length; i++) {
+      // Bytes past each row's width are padding, never read.
+      alpha[i] = (byte) random.nextInt();
+    }
+    int discs = 1 + random.nextInt(4);
+    float[][] centers = new float[discs][3];
+    for (float[] c : centers) {
+      c[0] = random.nextFloat() * w;
+      c[1] = random.nextFloat() * h;
+      c[2] = 2 + random.nextFloat() * Math.max(w, h) / 2;
+    }
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        float a = 0;
+        for (float[] c : centers) {
+          float dx = x + 0.5f - c[0];
+          float dy = y + 0.5f - c[1];
+          float edge = c[2] - (float) Math.sqrt(dx * dx + dy * dy);
+          a = Math.max(a, Math.min(1, Math.max(0, edge + 0.5f)));
+        }
+        if (random.nextInt(50) == 0) {
+          a = random.nextFloat();
+        }
+        alpha[y * stride + x] = (byte) Math.round(a * 255);
+      }
+    }
+    return alpha;
+  }
+
+  private static int[] image(Random random, int w, int h) {
+    int[] pix = new int[w * h];
+    for (int i = 0; i < pix.length; i++) {
+      pix[i] = random.nextInt();
+    }
+    return pix;
+  }
+
+  /**
+   * The distance from every pixel to the nearest outside pixel, trying them all, including a
+   * ring of outside pixels around the bitmap.
+   */
+  private static float[] referenceDistances(byte[] alpha, int stride, int w, int h) {
+    float[] distance = new float[w * h];
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        long best = Long.MAX_VALUE;
+        for (int oy = -1; oy <= h; oy++) {
+          for (int ox = -1; ox <= w; ox++) {
+            boolean outside = ox < 0 || oy < 0 || ox >= w || oy >= h
+                || (alpha[oy * stride + ox] & 0xff) < 128;
+            if (outside) {
+              long dx = ox - x;
+              long dy = oy - y;
+              best = Math.min(best, dx * dx + dy * dy);
+            }
+          }
+        }
+        distance[y * w + x] = (float) Math.sqrt(best);
+      }
+    }
+    return distance;
+  }
+
+  /**
+   * The bands drawn from a distance for every pixel of the bitmap.
+   */
+  private static void referenceDrawBands(int[] pix, float[] distance, byte[] alpha, int stride,
+                                         int w, int[] widths, int[] colors) {
+    float total = 0;
+    for (int bandWidth : widths) {
+      total += bandWidth;
+    }
+    for (int i = 0; i < pix.length; i++) {
+      int m = alpha[(i / w) * stride + i % w] & 0xff;
+      float e = Math.max(0, distance[i] - 1);
+      if (m == 0 || e >= total) {
+        continue;
+      }
+      float a = 0;
+      float r = 0;
+      float g = 0;
+      float b = 0;
+      float covered = 0;
+      float lo = 0;
+      for (int k = 0; k < widths.length; k++) {
+        float hi = lo + widths[k];
+        float cover = clamp(hi - e) - clamp(lo - e);
+        lo = hi;
+        if (cover <= 0) {
+          continue;
+        }
+        int color = colors[k];
+        float ca = cover * (color >>> 24) * m / 255f;
+        a += ca;
+        r += ca * ((color >> 16) & 0xff);
+        g += ca * ((color >> 8) & 0xff);
+        b += ca * (color & 0xff);
+        covered += cover;
+      }
+
+      int p = pix[i];
+      float ia = Math.max(0, 1 - covered) * (p >>> 24);
+      a += ia;
+      r += ia * ((p >> 16) & 0xff);
+      g += ia * ((p >> 8) & 0xff);
+      b += ia * (p & 0xff);
+
+      if (a <= 0) {
+        pix[i] = 0;
+      } else {
+        pix[i] = (Math.min(255, Math.round(a)) << 24)
+            | (Math.min(255, Math.round(r / a)) << 16)
+            | (Math.min(255, Math.round(g / a)) << 8)
+            | Math.min(255, Math.round(b / a));
+      }
+    }
+  }
+
+  private static float clamp(float value) {
+    return Math.min(1, Math.max(0, value));
+  }
+}
@@ -0,0 +1,310 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FastBlurTest {
+
+  private static final int[][] SIZES = {
+      { 1, 1 }, { 1, 7 }, { 7, 1 }, { 3, 3 }, { 17, 33 }, { 100, 57 }, { 300, 301 }, { 513, 259 }
+  };
+  private static final int[] RADII = { 1, 2, 5, 13, 25, 40, 100 };
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @AfterClass
+  public static void shutdown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void serialMatchesStackBlur() {
+    Random random = new Random(1);
+    for (int[] size : SIZES) {
+      for (int radius : RADII) {
+        int[] pix = randomPixels(random, size[0] * size[1]);
+        int[] expected = pix.clone();
+        referenceBlur(expected, size[0], size[1], radius);
+
+        FastBlur.blur(pix, size[0], size[1], radius, null, null);
+        assertArrayEquals(size[0] + "x" + size[1] + " r" + radius, expected, pix);
+      }
+    }
+  }
+
+  @Test
+  public void bandsMatchStackBlur() {
+    Random random = new Random(2);
+    for (int[] size : SIZES) {
+      for (int radius : RADII) {
+        int[] pix = randomPixels(random, size[0] * size[1]);
+        int[] expected = pix.clone();
+        referenceBlur(expected, size[0], size[1], radius);
+
+        FastBlur.blur(pix, size[0], size[1], radius, null, executor);
+        assertArrayEquals(size[0] + "x" + size[1] + " r" + radius, expected, pix);
+      }
+    }
+  }
+
+  @Test
+  public void pooledLineBuffersMatchStackBlur() {
+    Random random = new Random(3);
+    GarbageArrayPool pool = new GarbageArrayPool();
+    for (int pass = 0; pass < 2; pass++) {
+      for (int[] size : SIZES) {
+        for (int radius : RADII) {
+          int wh = size[0] * size[1];
+          int[] expected = randomPixels(random, wh);
+          // A pooled pixel array is longer than the image, the tail must be left alone.
+          int[] pix = Arrays.copyOf(expected, wh + 3);
+          pix[wh] = 1;
+          pix[wh + 1] = 2;
+          pix[wh + 2] = 3;
+          referenceBlur(expected, size[0], size[1], radius);
+
+          FastBlur.blur(pix, size[0], size[1], radius, pool, pass == 0 ? null : executor);
+          assertArrayEquals(size[0] + "x" + size[1] + " r" + radius,
+              expected, Arrays.copyOf(pix, wh));
+          assertArrayEquals(new int[] { 1, 2, 3 }, Arrays.copyOfRange(pix, wh, wh + 3));
+        }
+      }
+    }
+    assertEquals(0, pool.outstanding());
+  }
+
+  @Test
+  public void warmPooledBlurAllocatesNothing() {
+    Random random = new Random(4);
+    for (int[] size : SIZES) {
+      for (int radius : RADII) {
+        GarbageArrayPool pool = new GarbageArrayPool();
+        int[] pix = randomPixels(random, size[0] * size[1]);
+        FastBlur.blur(pix, size[0], size[1], radius, pool, null);
+        FastBlur.blur(pix, size[0], size[1], radius, pool, null);
+        int allocations = pool.allocations();
+
+        FastBlur.blur(pix, size[0], size[1], radius, pool, null);
+        assertEquals(size[0] + "x" + size[1] + " r" + radius, allocations, pool.allocations());
+      }
+    }
+  }
+
+  @Test
+  public void reciprocalDividesExactly() {
+    for (int radius = 1; radius <= 254; radius = radius < 100 ? radius + 1 : radius + 11) {
+      int divisor = (radius + 1) * (radius + 1);
+      int shift = FastBlur.divShift(divisor);
+      long mul = FastBlur.divMul(divisor, shift);
+      for (int sum = 0; sum < 256 * divisor; sum++) {
+        if ((int) ((sum * mul) >>> shift) != sum / divisor) {
+          fail("r" + radius + " " + sum + " / " + divisor);
+        }
+      }
+    }
+  }
+
+  static int[] randomPixels(Random random, int length) {
+    int[] pix = new int[length];
+    for (int i = 0; i < length; i++) {
+      pix[i] = random.nextInt();
+    }
+    return pix;
+  }
+
+  /**
+   * The Stack Blur kernel as FastBlur shipped it before it was split into bands, with its
+   * r, g, b planes and dv lookup table, kept as the reference every other version must match.
+   */
+  static void referenceBlur(int[] pix, int w, int h, int radius) {
+    int wm = w - 1;
+    int hm = h - 1;
+    int wh = w * h;
+    int div = radius + radius + 1;
+
+    int[] r = new int[wh];
+    int[] g = new int[wh];
+    int[] b = new int[wh];
+    int rsum, gsum, bsum, x, y, i, p, yp, yi, yw;
+    int[] vmin = new int[Math.max(w, h)];
+
+    int divsum = (div + 1) >> 1;
+    divsum *= divsum;
+    int[] dv = new int[256 * divsum];
+    for (i = 0; i < 256 * divsum; i++) {
+      dv[i] = (i / divsum);
+    }
+
+    yw = yi = 0;
+
+    int[][] stack = new int[div][3];
+    int stackpointer;
+    int stackstart;
+    int[] sir;
+    int rbs;
+    int r1 = radius + 1;
+    int routsum, goutsum, boutsum;
+    int rinsum, ginsum, binsum;
+
+    for (y = 0; y < h; y++) {
+      rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
+      for (i = -radius; i <= radius; i++) {
+        p = pix[yi + Math.min(wm, Math.max(i, 0))];
+        sir = stack[i + radius];
+        sir[0] = (p & 0xff0000) >> 16;
+        sir[1] = (p & 0x00ff00) >> 8;
+        sir[2] = (p & 0x0000ff);
+        rbs = r1 - Math.abs(i);
+        rsum += sir[0] * rbs;
+        gsum += sir[1] * rbs;
+        bsum += sir[2] * rbs;
+        if (i > 0) {
+          rinsum += sir[0];
+          ginsum += sir[1];
+          binsum += sir[2];
+        } else {
+          routsum += sir[0];
+          goutsum += sir[1];
+          boutsum += sir[2];
+        }
+      }
+      stackpointer = radius;
+
+      for (x = 0; x < w; x++) {
+        r[yi] = dv[rsum];
+        g[yi] = dv[gsum];
+        b[yi] = dv[bsum];
+
+        rsum -= routsum;
+        gsum -= goutsum;
+        bsum -= boutsum;
+
+        stackstart = stackpointer - radius + div;
+        sir = stack[stackstart % div];
+
+        routsum -= sir[0];
+        goutsum -= sir[1];
+        boutsum -= sir[2];
+
+        if (y == 0) {
+          vmin[x] = Math.min(x + radius + 1, wm);
+        }
+        p = pix[yw + vmin[x]];
+
+        sir[0] = (p & 0xff0000) >> 16;
+        sir[1] = (p & 0x00ff00) >> 8;
+        sir[2] = (p & 0x0000ff);
+
+        rinsum += sir[0];
+        ginsum += sir[1];
+        binsum += sir[2];
+
+        rsum += rinsum;
+        gsum += ginsum;
+        bsum += binsum;
+
+        stackpointer = (stackpointer + 1) % div;
+        sir = stack[(stackpointer) % div];
+
+        routsum += sir[0];
+        goutsum += sir[1];
+        boutsum += sir[2];
+
+        rinsum -= sir[0];
+        ginsum -= sir[1];
+        binsum -= sir[2];
+
+        yi++;
+      }
+      yw += w;
+    }
+    for (x = 0; x < w; x++) {
+      rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
+      yp = -radius * w;
+      for (i = -radius; i <= radius; i++) {
+        yi = Math.max(0, yp) + x;
+
+        sir = stack[i + radius];
+
+        sir[0] = r[yi];
+        sir[1] = g[yi];
+        sir[2] = b[yi];
+
+        rbs = r1 - Math.abs(i);
+
+        rsum += r[yi] * rbs;
+        gsum += g[yi] * rbs;
+        bsum += b[yi] * rbs;
+
+        if (i > 0) {
+          rinsum += sir[0];
+          ginsum += sir[1];
+          binsum += sir[2];
+        } else {
+          routsum += sir[0];
+          goutsum += sir[1];
+          boutsum += sir[2];
+        }
+
+        if (i < hm) {
+          yp += w;
+        }
+      }
+      yi = x;
+      stackpointer = radius;
+      for (y = 0; y < h; y++) {
+        pix[yi] = (0xff000000 & pix[yi]) | (dv[rsum] << 16) | (dv[gsum] << 8) | dv[bsum];
+
+        rsum -= routsum;
+        gsum -= goutsum;
+        bsum -= boutsum;
+
+        stackstart = stackpointer - radius + div;
+        sir = stack[stackstart % div];
+
+        routsum -= sir[0];
+        goutsum -= sir[1];
+        boutsum -= sir[2];
+
+        if (x == 0) {
+          vmin[y] = Math.min(y + r1, hm) * w;
+        }
+        p = x + vmin[y];
+
+        sir[0] = r[p];
+        sir[1] = g[p];
+        sir[2] = b[p];
+
+        rinsum += sir[0];
+        ginsum += sir[1];
+        binsum += sir[2];
+
+        rsum += rinsum;
+        gsum += ginsum;
+        bsum += binsum;
+
+        stackpointer = (stackpointer + 1) % div;
+        sir = stack[stackpointer];
+
+        routsum += sir[0];
+        goutsum += sir[1];
+        boutsum += sir[2];
+
+        rinsum -= sir[0];
+        ginsum -= sir[1];
+        binsum -= sir[2];
+
+        yi += w;
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An {@link ArrayPool} that hands out arrays the way a busy pool does at worst: longer than asked
+ * for and full of whatever the last user left in them. Kernels must neither read past the size
+ * they asked for nor rely on fresh arrays being zeroed.
+ */
+class GarbageArrayPool implements ArrayPool {
+
+  private final List<Object> free = new ArrayList<>();
+  private final Random random = new Random(5);
+  private int allocations;
+  private int outstanding;
+
+  @Override
+  @Deprecated
+  public synchronized <T> void put(T array, Class<T> arrayClass) {
+    put(array);
+  }
+
+  @Override
+  public synchronized <T> void put(T array) {
+    free.add(array);
+    outstanding--;
+  }
+
+  @Override
+  public synchronized <T> T get(int size, Class<T> arrayClass) {
+    outstanding++;
+    for (Iterator<Object> it = free.iterator(); it.hasNext(); ) {
+      Object array = it.next();
+      int length = Array.getLength(array);
+      if (array.getClass() == arrayClass && length >= size && length <= size * 8) {
+        it.remove();
+        return arrayClass.cast(array);
+      }
+    }
+    allocations++;
+    Object array = Array.newInstance(arrayClass.getComponentType(), size + random.nextInt(5));
+    fill(array);
+    return arrayClass.cast(array);
+  }
+
+  @Override
+  public <T> T getExact(int size, Class<T> arrayClass) {
+    return get(size, arrayClass);
+  }
+
+  @Override
+  public synchronized void clearMemory() {
+    free.clear();
+  }
+
+  @Override
+  public void trimMemory(int level) {
+    clearMemory();
+  }
+
+  /**
+   * Arrays created so far, a warmed up kernel should not need more.
+   */
+  synchronized int allocations() {
+    return allocations;
+  }
+
+  /**
+   * Arrays handed out and not returned yet.
+   */
+  synchronized int outstanding() {
+    return outstanding;
+  }
+
+  private void fill(Object array) {
+    for (int i = 0, n = Array.getLength(array); i < n; i++) {
+      if (array instanceof int[]) {
+        ((int[]) array)[i] = random.nextInt();
+      } else if (array instanceof byte[]) {
+        ((byte[]) array)[i] = (byte) random.nextInt();
+      } else if (array instanceof long[]) {
+        ((long[]) array)[i] = random.nextLong();
+      } else if (array instanceof float[]) {
+        ((float[]) array)[i] = random.nextFloat() * 1e6f - 5e5f;
+      } else if (array instanceof short[]) {
+        ((short[]) array)[i] = (short) random.nextInt();
+      }
+    }
+  }
+}
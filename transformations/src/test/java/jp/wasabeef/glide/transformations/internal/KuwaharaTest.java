@@ -0,0 +1,119 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class KuwaharaTest {
+
+  // { width, height, radius }
+  private static final int[][] CASES = {
+      { 1, 1, 3 }, { 20, 20, 0 }, { 37, 23, 3 }, { 5, 9, 8 }, { 64, 80, 5 }, { 100, 60, 12 },
+      { 300, 300, 25 }
+  };
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @AfterClass
+  public static void shutdown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void matchesBruteForce() {
+    Random random = new Random(1);
+    GarbageArrayPool pool = new GarbageArrayPool();
+    for (int[] c : CASES) {
+      int w = c[0];
+      int h = c[1];
+      int[] src = image(random, w, h);
+      int[] expected = referenceFilter(src, w, h, c[2]);
+
+      int[] dst = new int[w * h];
+      Kuwahara.filter(src, dst, w, h, c[2], null, null);
+      assertArrayEquals(w + "x" + h + " r" + c[2], expected, dst);
+
+      dst = new int[w * h];
+      Kuwahara.filter(src, dst, w, h, c[2], pool, executor);
+      assertArrayEquals(w + "x" + h + " r" + c[2] + " in bands", expected, dst);
+    }
+    assertEquals(0, pool.outstanding());
+  }
+
+  @Test
+  public void clampsTheRadius() {
+    Random random = new Random(2);
+    int w = 40;
+    int h = 30;
+    int[] src = image(random, w, h);
+
+    int[] expected = new int[w * h];
+    Kuwahara.filter(src, expected, w, h, Kuwahara.MAX_RADIUS, null, null);
+    int[] dst = new int[w * h];
+    Kuwahara.filter(src, dst, w, h, Kuwahara.MAX_RADIUS + 100, null, null);
+    assertArrayEquals(expected, dst);
+  }
+
+  /**
+   * Noise with bands of near-flat gray, so quadrants both differ and tie.
+   */
+  private static int[] image(Random random, int w, int h) {
+    int[] pix = new int[w * h];
+    for (int i = 0; i < pix.length; i++) {
+      pix[i] = (i / w) % 10 < 5 ? 0xff808080 ^ (random.nextInt(16) * 0x010101) : random.nextInt();
+    }
+    return pix;
+  }
+
+  /**
+   * Sums every quadrant of every pixel, trying them in GPUImage's order: top left, top right,
+   * bottom right, bottom left, and keeping the first with the least variance.
+   */
+  private static int[] referenceFilter(int[] src, int w, int h, int r) {
+    int[] dst = new int[w * h];
+    int n = (r + 1) * (r + 1);
+    int[][] quadrants = { { -r, 0, -r, 0 }, { 0, r, -r, 0 }, { 0, r, 0, r }, { -r, 0, 0, r } };
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        long best = Long.MAX_VALUE;
+        int out = 0;
+        for (int[] q : quadrants) {
+          long[] sum = new long[3];
+          long[] squares = new long[3];
+          for (int j = q[2]; j <= q[3]; j++) {
+            for (int i = q[0]; i <= q[1]; i++) {
+              int yy = Math.min(h - 1, Math.max(0, y + j));
+              int xx = Math.min(w - 1, Math.max(0, x + i));
+              int p = src[yy * w + xx];
+              for (int k = 0; k < 3; k++) {
+                int value = (p >> (16 - 8 * k)) & 0xff;
+                sum[k] += value;
+                squares[k] += value * value;
+              }
+            }
+          }
+          // n^2 times the summed variance of the three channels.
+          long variance = 0;
+          for (int k = 0; k < 3; k++) {
+            variance += squares[k] * n - sum[k] * sum[k];
+          }
+          if (variance < best) {
+            best = variance;
+            out = 0xff000000;
+            for (int k = 0; k < 3; k++) {
+              out |= (int) ((sum[k] + n / 2) / n) << (16 - 8 * k);
+            }
+          }
+        }
+        dst[y * w + x] = out;
+      }
+    }
+    return dst;
+  }
+}
@@ -0,0 +1,98 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PixelateTest {
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @AfterClass
+  public static void shutdown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void matchesBlockAverage() {
+    Random random = new Random(1);
+    GarbageArrayPool pool = new GarbageArrayPool();
+    // { width, height, block }
+    int[][] cases = {
+        { 9, 9, 1 }, { 37, 23, 5 }, { 64, 64, 8 }, { 10, 7, 20 }, { 100, 3, 7 }, { 513, 400, 6 }
+    };
+    for (int[] c : cases) {
+      int w = c[0];
+      int h = c[1];
+      int[] src = new int[w * h];
+      for (int i = 0; i < src.length; i++) {
+        src[i] = random.nextInt();
+      }
+      int[] expected = referencePixelate(src, w, h, Math.min(c[2], Math.max(w, h)));
+
+      int[] pix = src.clone();
+      Pixelate.pixelate(pix, w, h, c[2], null, null);
+      assertArrayEquals(w + "x" + h + " block " + c[2], expected, pix);
+
+      pix = src.clone();
+      Pixelate.pixelate(pix, w, h, c[2], pool, executor);
+      assertArrayEquals(w + "x" + h + " block " + c[2] + " in bands", expected, pix);
+    }
+    assertEquals(0, pool.outstanding());
+  }
+
+  @Test
+  public void hugeBlocksDoNotOverflow() {
+    int w = 3000;
+    int h = 2900;
+    int[] pix = new int[w * h];
+    Arrays.fill(pix, 0xffffffff);
+
+    Pixelate.pixelate(pix, w, h, 5000, null, null);
+    for (int i = 0; i < pix.length; i++) {
+      if (pix[i] != 0xffffffff) {
+        assertEquals("pixel " + i, 0xffffffff, pix[i]);
+      }
+    }
+  }
+
+  /**
+   * Every cell filled with the rounded mean of its pixels, summed in longs.
+   */
+  private static int[] referencePixelate(int[] src, int w, int h, int size) {
+    int[] dst = src.clone();
+    if (size <= 1) {
+      return dst;
+    }
+    for (int top = 0; top < h; top += size) {
+      for (int left = 0; left < w; left += size) {
+        int bottom = Math.min(h, top + size);
+        int right = Math.min(w, left + size);
+        long[] sums = new long[4];
+        for (int y = top; y < bottom; y++) {
+          for (int x = left; x < right; x++) {
+            for (int k = 0; k < 4; k++) {
+              sums[k] += (src[y * w + x] >>> (24 - 8 * k)) & 0xff;
+            }
+          }
+        }
+        long count = (long) (bottom - top) * (right - left);
+        int color = 0;
+        for (int k = 0; k < 4; k++) {
+          color |= (int) ((sums[k] + count / 2) / count) << (24 - 8 * k);
+        }
+        for (int y = top; y < bottom; y++) {
+          Arrays.fill(dst, y * w + left, y * w + right, color);
+        }
+      }
+    }
+    return dst;
+  }
+}
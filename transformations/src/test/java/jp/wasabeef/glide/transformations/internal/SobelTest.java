@@ -0,0 +1,129 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SobelTest {
+
+  private static final int W = 97;
+  private static final int H = 61;
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @AfterClass
+  public static void shutdown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void sketchMatchesReference() {
+    int[] src = image(new Random(1));
+    int[] dst = new int[W * H];
+    Sobel.sketch(src, dst, W, H, null, null);
+
+    for (int y = 0; y < H; y++) {
+      for (int x = 0; x < W; x++) {
+        double magnitude = magnitude(src, x, y, true);
+        int expected = (int) Math.round(Math.max(0, 1 - magnitude) * 255);
+        int actual = dst[y * W + x];
+        assertEquals(0xff000000, actual & 0xff000000);
+        assertEquals(actual & 0xff, (actual >> 8) & 0xff);
+        assertEquals(actual & 0xff, (actual >> 16) & 0xff);
+        // Intensities are kept in 1/256 steps, the rounding may land one off.
+        assertTrue("(" + x + ", " + y + ")", Math.abs(expected - (actual & 0xff)) <= 1);
+      }
+    }
+  }
+
+  @Test
+  public void toonMatchesReference() {
+    float threshold = 0.2f;
+    float levels = 10f;
+    int[] src = image(new Random(2));
+    int[] dst = new int[W * H];
+    Sobel.toon(src, dst, W, H, threshold, levels, null, null);
+
+    for (int y = 0; y < H; y++) {
+      for (int x = 0; x < W; x++) {
+        double magnitude = magnitude(src, x, y, false);
+        if (Math.abs(magnitude - threshold) < 1e-3) {
+          // Too close to the threshold for the fixed-point sums to agree with doubles.
+          continue;
+        }
+        int p = src[y * W + x];
+        int expected = p & 0xff000000;
+        if (magnitude < threshold) {
+          for (int shift = 0; shift < 24; shift += 8) {
+            double c = ((p >> shift) & 0xff) / 255.0;
+            expected |= (int) Math.round(Math.floor(c * levels + 0.5) / levels * 255) << shift;
+          }
+        }
+        assertEquals("(" + x + ", " + y + ")", expected, dst[y * W + x]);
+      }
+    }
+  }
+
+  @Test
+  public void bandsMatchSerial() {
+    int w = 300;
+    int h = 257;
+    int[] src = new int[w * h];
+    Random random = new Random(3);
+    for (int i = 0; i < src.length; i++) {
+      src[i] = random.nextInt();
+    }
+    GarbageArrayPool pool = new GarbageArrayPool();
+
+    int[] expected = new int[w * h];
+    int[] actual = new int[w * h];
+    Sobel.sketch(src, expected, w, h, null, null);
+    Sobel.sketch(src, actual, w, h, pool, executor);
+    assertArrayEquals(expected, actual);
+
+    Sobel.toon(src, expected, w, h, 0.3f, 8f, null, null);
+    Sobel.toon(src, actual, w, h, 0.3f, 8f, pool, executor);
+    assertArrayEquals(expected, actual);
+    assertEquals(0, pool.outstanding());
+  }
+
+  /**
+   * Two flat, slightly noisy halves, so there are both flat areas and an edge.
+   */
+  private static int[] image(Random random) {
+    int[] pix = new int[W * H];
+    for (int i = 0; i < pix.length; i++) {
+      pix[i] = (i % W < 40 ? 0xff336699 : 0xffccaa22) ^ (random.nextInt(8) * 0x010101);
+    }
+    return pix;
+  }
+
+  /**
+   * GPUImage's Sobel magnitude at (x, y), of the luminance or of the red channel, with the edges
+   * of the image repeated.
+   */
+  private static double magnitude(int[] src, int x, int y, boolean luminance) {
+    double[][] q = new double[3][3];
+    for (int j = -1; j <= 1; j++) {
+      for (int i = -1; i <= 1; i++) {
+        int yy = Math.max(0, Math.min(H - 1, y + j));
+        int xx = Math.max(0, Math.min(W - 1, x + i));
+        int p = src[yy * W + xx];
+        double r = ((p >> 16) & 0xff) / 255.0;
+        double g = ((p >> 8) & 0xff) / 255.0;
+        double b = (p & 0xff) / 255.0;
+        q[j + 1][i + 1] = luminance ? 0.2125 * r + 0.7154 * g + 0.0721 * b : r;
+      }
+    }
+    double horizontal = -q[0][0] - 2 * q[0][1] - q[0][2] + q[2][0] + 2 * q[2][1] + q[2][2];
+    double vertical = -q[2][0] - 2 * q[1][0] - q[0][0] + q[2][2] + 2 * q[1][2] + q[0][2];
+    return Math.sqrt(horizontal * horizontal + vertical * vertical);
+  }
+}
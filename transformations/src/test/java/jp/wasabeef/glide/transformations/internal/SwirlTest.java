@@ -0,0 +1,99 @@
+package jp.wasabeef.glide.transformations.internal;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SwirlTest {
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @AfterClass
+  public static void shutdown() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void fractionBitsShrinkWithTheImage() {
+    assertEquals(8, Swirl.fractionBits(1, 1));
+    assertEquals(8, Swirl.fractionBits(123, 77));
+    assertEquals(5, Swirl.fractionBits(1080, 1920));
+    assertEquals(3, Swirl.fractionBits(4000, 3000));
+  }
+
+  @Test
+  public void matchesBilinearReference() {
+    Random random = new Random(1);
+    // { width, height } x { radius, angle, centerX, centerY }
+    int[][] sizes = { { 1, 1 }, { 2, 3 }, { 123, 77 }, { 300, 200 }, { 1080, 1920 } };
+    float[][] params = { { 0.5f, 1f, 0.5f, 0.5f }, { 0.3f, -2f, 0.2f, 0.7f } };
+    for (int[] size : sizes) {
+      for (float[] p : params) {
+        int w = size[0];
+        int h = size[1];
+        int[] src = new int[w * h];
+        for (int i = 0; i < src.length; i++) {
+          src[i] = random.nextInt();
+        }
+        int[] dst = new int[w * h];
+        Swirl.swirl(src, dst, w, h, p[0], p[1], p[2], p[3], null);
+
+        // Weights rounded to the map's fraction bits, and three lerps truncating.
+        int tolerance = 3 + (255 >> Swirl.fractionBits(w, h));
+        int error = maxError(src, dst, w, h, p[0], p[1], p[2], p[3]);
+        assertTrue(w + "x" + h + " off by " + error, error <= tolerance);
+
+        int[] again = new int[w * h];
+        Swirl.swirl(src, again, w, h, p[0], p[1], p[2], p[3], executor);
+        assertArrayEquals(w + "x" + h + " cached, in bands", dst, again);
+      }
+    }
+  }
+
+  /**
+   * The largest channel difference between {@code dst} and the swirl computed in doubles.
+   */
+  private static int maxError(int[] src, int[] dst, int w, int h, double radius, double angle,
+                              double centerX, double centerY) {
+    int max = 0;
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        double u = (x + 0.5) / w - centerX;
+        double v = (y + 0.5) / h - centerY;
+        double dist = Math.sqrt(u * u + v * v);
+        if (dist >= radius) {
+          assertEquals(src[y * w + x], dst[y * w + x]);
+          continue;
+        }
+        double percent = (radius - dist) / radius;
+        double theta = percent * percent * angle * 8;
+        double su = u * Math.cos(theta) - v * Math.sin(theta) + centerX;
+        double sv = u * Math.sin(theta) + v * Math.cos(theta) + centerY;
+        double sx = Math.max(0, Math.min(w - 1, su * w - 0.5));
+        double sy = Math.max(0, Math.min(h - 1, sv * h - 0.5));
+        int x0 = (int) sx;
+        int y0 = (int) sy;
+        int x1 = Math.min(x0 + 1, w - 1);
+        int y1 = Math.min(y0 + 1, h - 1);
+        double fx = sx - x0;
+        double fy = sy - y0;
+        for (int shift = 0; shift < 32; shift += 8) {
+          double c00 = (src[y0 * w + x0] >>> shift) & 0xff;
+          double c01 = (src[y0 * w + x1] >>> shift) & 0xff;
+          double c10 = (src[y1 * w + x0] >>> shift) & 0xff;
+          double c11 = (src[y1 * w + x1] >>> shift) & 0xff;
+          double c = (c00 * (1 - fx) + c01 * fx) * (1 - fy) + (c10 * (1 - fx) + c11 * fx) * fy;
+          max = Math.max(max, (int) Math.ceil(Math.abs(c - ((dst[y * w + x] >>> shift) & 0xff))));
+        }
+      }
+    }
+    return max;
+  }
+}